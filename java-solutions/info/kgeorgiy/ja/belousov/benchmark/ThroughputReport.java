@@ -0,0 +1,110 @@
+package info.kgeorgiy.ja.belousov.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Measurement harness shared by the throughput benchmarks.
+ * <p>
+ * Every benchmark is run for a few warmup iterations and then measured for several more.
+ * Results are collected as a JSON array in a JMH-like layout: every entry has {@code benchmark}, {@code params}
+ * and {@code primaryMetric} with the mean score, its 99.9% confidence half-width and raw per-iteration scores.
+ *
+ * @author Timofey Belousov
+ */
+public class ThroughputReport {
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    /**
+     * Two-sided 99.9% quantile of the normal distribution
+     */
+    private static final double CONFIDENCE_QUANTILE = 3.29;
+
+    private final List<String> results = new ArrayList<>();
+
+    /**
+     * A single iteration of a benchmark
+     *
+     * @param <E> type of the exception thrown by the benchmarked code
+     */
+    @FunctionalInterface
+    public interface Iteration<E extends Exception> {
+        /**
+         * Runs the iteration
+         *
+         * @return number of processed units
+         * @throws E if the benchmarked code fails
+         */
+        double run() throws E;
+    }
+
+    /**
+     * Measures throughput of the benchmark, reports it to {@code System.err} and adds it to the results
+     *
+     * @param benchmark name of the benchmark
+     * @param params    parameters of the benchmark, in the reported order
+     * @param unit      name of the processed units
+     * @param iteration iteration of the benchmark
+     * @param <E>       type of the exception thrown by the iteration
+     * @throws E if an iteration fails
+     */
+    public <E extends Exception> void measure(String benchmark, Map<String, String> params, String unit,
+                                              Iteration<E> iteration) throws E {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            double units = iteration.run();
+            scores[i] = units / ((System.nanoTime() - start) / 1e9);
+        }
+
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(score -> (score - mean) * (score - mean)).sum()
+                / Math.max(1, scores.length - 1);
+        double error = CONFIDENCE_QUANTILE * Math.sqrt(variance / scores.length);
+
+        System.err.format("%s %s: %.1f +- %.1f %s/s%n", benchmark, params, mean, error, unit);
+        results.add(String.format(Locale.ROOT,
+                "{\"benchmark\": \"%s\", \"mode\": \"thrpt\", \"params\": {%s}, \"primaryMetric\": "
+                        + "{\"score\": %.3f, \"scoreError\": %.3f, \"scoreUnit\": \"%s/s\", \"rawData\": [%s]}}",
+                benchmark,
+                params.entrySet().stream()
+                        .map(entry -> String.format("\"%s\": \"%s\"", entry.getKey(), entry.getValue()))
+                        .collect(Collectors.joining(", ")),
+                mean, error, unit,
+                Arrays.stream(scores).mapToObj(score -> String.format(Locale.ROOT, "%.3f", score))
+                        .collect(Collectors.joining(", "))));
+    }
+
+    /**
+     * Returns the collected results as a JSON array
+     *
+     * @return JSON array of the results
+     */
+    public String toJson() {
+        return results.stream().collect(Collectors.joining("," + System.lineSeparator() + "  ",
+                "[" + System.lineSeparator() + "  ", System.lineSeparator() + "]"));
+    }
+
+    /**
+     * Writes the collected results as a JSON array
+     *
+     * @param file path of the result file, or {@code null} to print the results to {@code System.out}
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String file) throws IOException {
+        String json = toJson();
+        if (file != null) {
+            Files.writeString(Path.of(file), json, StandardCharsets.UTF_8);
+        } else {
+            System.out.println(json);
+        }
+    }
+}
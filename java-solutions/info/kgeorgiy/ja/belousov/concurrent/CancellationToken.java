@@ -0,0 +1,40 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+/**
+ * A cancellation token shared between the caller of a parallel computation and its tasks.
+ * It can be only created in the not cancelled state.
+ * This flag can be easily read with the {@link #isCancelled()} method, but it can only be modified once
+ * (from not cancelled to cancelled state) with the {@link #cancel()} method.
+ * Since it can only be modified once, to a single state, it is thread-safe while not requiring any
+ * synchronization techniques.
+ * The flag is used to signal that one of the tasks had successfully reached the global target
+ * (or the computation has failed), so the tasks not started yet are dropped, and the running ones are
+ * safe to finish without continuing any computations.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * A constructor that creates a token in the not cancelled state
+     */
+    public CancellationToken() {
+        cancelled = false;
+    }
+
+    /**
+     * A basic getter method that can be used by many thread simultaneously.
+     * It is cheap enough to be polled by tasks on every element.
+     *
+     * @return whether the computation was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the computation. This action is irreversible.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+}
@@ -0,0 +1,75 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import java.util.*;
+
+/**
+ * An unmodifiable list view that concatenates several lists (chunks) without copying them.
+ * Nested {@link ChunkedList}s are flattened on creation, so the element access costs a single binary search
+ * over the chunk offsets regardless of how the view was assembled.
+ * The chunks must not be modified after the view is created.
+ *
+ * @param <T> type of the elements
+ */
+public class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+    private final List<List<? extends T>> chunks = new ArrayList<>();
+    private final int[] offsets;
+
+    /**
+     * Creates a view over the concatenation of the given lists, in the given order
+     *
+     * @param parts lists to concatenate
+     */
+    public ChunkedList(List<? extends List<? extends T>> parts) {
+        for (List<? extends T> part : parts) {
+            if (part instanceof ChunkedList<? extends T> chunked) {
+                chunks.addAll(chunked.chunks);
+            } else if (!part.isEmpty()) {
+                chunks.add(part);
+            }
+        }
+
+        offsets = new int[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i + 1] = offsets[i] + chunks.get(i).size();
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size());
+        int chunk = Arrays.binarySearch(offsets, 0, chunks.size(), index);
+        if (chunk < 0) {
+            chunk = -chunk - 2;
+        }
+        return chunks.get(chunk).get(index - offsets[chunk]);
+    }
+
+    @Override
+    public int size() {
+        return offsets[chunks.size()];
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int chunk = 0;
+            private Iterator<? extends T> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && chunk < chunks.size()) {
+                    current = chunks.get(chunk++).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
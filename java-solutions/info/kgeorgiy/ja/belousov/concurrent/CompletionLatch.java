@@ -0,0 +1,77 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lightweight single-waiter latch used by {@link ParallelMapperImpl} to wait for submitted chunks.
+ * The waiting thread is only unparked once: either by the last completed chunk, or by the first failed one.
+ * Completion of any chunk happens-before the return from {@link #await()}.
+ */
+public class CompletionLatch {
+    private final AtomicInteger remaining;
+    private final AtomicReference<RuntimeException> exception = new AtomicReference<>();
+    private final Thread waiter = Thread.currentThread();
+
+    /**
+     * Creates a latch waiting for {@code count} completions.
+     * The latch must be created by the thread that will {@link #await()} it.
+     *
+     * @param count number of completions to wait for
+     */
+    public CompletionLatch(int count) {
+        remaining = new AtomicInteger(count);
+    }
+
+    /**
+     * Signals completion of a single chunk. Wakes up the waiter if it was the last one.
+     */
+    public void countDown() {
+        if (remaining.decrementAndGet() == 0) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Signals failure of a chunk. Only the first exception is stored, the waiter is woken up immediately.
+     *
+     * @param e exception thrown by the chunk
+     */
+    public void fail(RuntimeException e) {
+        if (exception.compareAndSet(null, e)) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Checks whether some chunk has already failed, so the others can skip their remaining work
+     *
+     * @return {@code true} if {@link #fail(RuntimeException)} was called
+     */
+    public boolean isFailed() {
+        return exception.get() != null;
+    }
+
+    /**
+     * Waits until all chunks are completed or one of them fails.
+     *
+     * @throws InterruptedException if the waiting thread was interrupted
+     * @throws RuntimeException     the first exception passed to {@link #fail(RuntimeException)}
+     */
+    public void await() throws InterruptedException {
+        while (true) {
+            RuntimeException e = exception.get();
+            if (e != null) {
+                throw e;
+            }
+            if (remaining.get() == 0) {
+                return;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.park(this);
+        }
+    }
+}
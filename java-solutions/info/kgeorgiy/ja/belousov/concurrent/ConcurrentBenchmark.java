@@ -0,0 +1,188 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import info.kgeorgiy.ja.belousov.benchmark.ThroughputReport;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Throughput benchmark of {@link IterativeParallelism} and {@link ParallelMapperImpl}.
+ * <p>
+ * Compares {@code count} computed by a sequential loop, by {@code parallelStream()}, and by
+ * {@link IterativeParallelism} with its fork-join engine, with a shared {@link ParallelMapperImpl}
+ * and with a new {@link ParallelMapperImpl} per call, for element counts from {@code 1e3} up to the given maximum,
+ * cheap and expensive predicates, and thread counts from {@code 1} to the number of cores.
+ * Raw {@link ParallelMapperImpl#map} throughput with a trivial function is measured as well,
+ * to catch regressions in the mapper synchronization.
+ * <p>
+ * Elements are computed on access rather than stored, so even the largest lists do not need memory.
+ * Results are written by {@link ThroughputReport}.
+ */
+public class ConcurrentBenchmark {
+    /**
+     * Minimal duration of an iteration, short operations are repeated until it is reached
+     */
+    private static final long ITERATION_NANOS = 100_000_000;
+    /**
+     * Expensive predicate is only measured up to this many elements, otherwise the run would take hours
+     */
+    private static final int EXPENSIVE_MAX_ELEMENTS = 1_000_000;
+    private static final int EXPENSIVE_ROUNDS = 100;
+
+    private final ThroughputReport report = new ThroughputReport();
+    /**
+     * Sink for the operation results, so that the JIT cannot eliminate them
+     */
+    private long blackhole;
+
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * @return result of the operation
+         */
+        long run() throws InterruptedException;
+    }
+
+    /**
+     * Main function used as entrypoint when launched as a standalone application
+     *
+     * @param args Optional:
+     *             - path of the JSON result file, results are printed to stdout otherwise
+     *             - maximal number of elements (int), {@code 10^8} by default
+     */
+    public static void main(String[] args) {
+        if (args != null && args.length > 2) {
+            System.err.println("Usage: java ConcurrentBenchmark [result file [max elements]]");
+            return;
+        }
+
+        try {
+            int maxElements = args != null && args.length == 2 ? Integer.parseInt(args[1]) : 100_000_000;
+            ConcurrentBenchmark benchmark = new ConcurrentBenchmark();
+            benchmark.runAll(maxElements);
+
+            benchmark.report.write(args != null && args.length >= 1 ? args[0] : null);
+            System.err.format("Blackhole: %d%n", benchmark.blackhole);
+        } catch (NumberFormatException e) {
+            System.err.println("Incorrect max elements format!");
+        } catch (Exception e) {
+            System.err.format("Benchmark failed: %s%n", e);
+        }
+    }
+
+    private void runAll(int maxElements) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        Map<String, Predicate<Integer>> predicates = new LinkedHashMap<>();
+        predicates.put("cheap", value -> value % 7 == 0);
+        predicates.put("expensive", ConcurrentBenchmark::expensive);
+
+        try (ParallelMapperImpl sharedMapper = new ParallelMapperImpl(cores)) {
+            IterativeParallelism forkJoin = new IterativeParallelism();
+            IterativeParallelism shared = new IterativeParallelism(sharedMapper);
+
+            for (long size = 1000; size <= maxElements; size *= 10) {
+                List<Integer> values = values((int) size);
+                for (Map.Entry<String, Predicate<Integer>> entry : predicates.entrySet()) {
+                    if (entry.getKey().equals("expensive") && size > EXPENSIVE_MAX_ELEMENTS) {
+                        continue;
+                    }
+                    Predicate<Integer> predicate = entry.getValue();
+
+                    measureCount("sequential", entry.getKey(), 1, values, () -> {
+                        long count = 0;
+                        for (Integer value : values) {
+                            if (predicate.test(value)) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    });
+                    measureCount("parallelStream", entry.getKey(), cores, values,
+                            () -> values.parallelStream().filter(predicate).count());
+                    for (int threads : threadCounts) {
+                        measureCount("forkJoin", entry.getKey(), threads, values,
+                                () -> forkJoin.count(threads, values, predicate));
+                        measureCount("sharedMapper", entry.getKey(), threads, values,
+                                () -> shared.count(threads, values, predicate));
+                        measureCount("mapperPerCall", entry.getKey(), threads, values, () -> {
+                            try (ParallelMapperImpl mapper = new ParallelMapperImpl(threads)) {
+                                return new IterativeParallelism(mapper).count(threads, values, predicate);
+                            }
+                        });
+                    }
+                }
+
+                // Boxed results of the whole list would not fit into memory for the largest sizes
+                if (size <= 10_000_000) {
+                    Map<String, String> params = new LinkedHashMap<>();
+                    params.put("elements", Long.toString(size));
+                    params.put("threads", Integer.toString(cores));
+                    measure("mapperMap", params, values.size(), () -> sharedMapper.map(value -> value, values).size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable list of pseudo-random numbers computed from the index on every access
+     */
+    private static List<Integer> values(int size) {
+        class ComputedList extends AbstractList<Integer> implements RandomAccess {
+            @Override
+            public Integer get(int index) {
+                Objects.checkIndex(index, size);
+                return (int) ((index * 0x9E3779B97F4A7C15L) >>> 40);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }
+        return new ComputedList();
+    }
+
+    private static boolean expensive(Integer value) {
+        int hash = value;
+        for (int i = 0; i < EXPENSIVE_ROUNDS; i++) {
+            hash = hash * 0x01000193 ^ i;
+        }
+        return (hash & 7) == 0;
+    }
+
+    private void measureCount(String engine, String predicate, int threads, List<Integer> values,
+                              Operation operation) throws InterruptedException {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("engine", engine);
+        params.put("predicate", predicate);
+        params.put("elements", Integer.toString(values.size()));
+        params.put("threads", Integer.toString(threads));
+        measure("count", params, values.size(), operation);
+    }
+
+    private void measure(String benchmark, Map<String, String> params, long elements, Operation operation)
+            throws InterruptedException {
+        report.measure(benchmark, params, "elements", () -> repeat(elements, operation));
+    }
+
+    /**
+     * Repeats the operation until {@link #ITERATION_NANOS} pass
+     *
+     * @return number of processed elements
+     */
+    private double repeat(long elements, Operation operation) throws InterruptedException {
+        long start = System.nanoTime();
+        long operations = 0;
+        do {
+            blackhole += operation.run();
+            operations++;
+        } while (System.nanoTime() - start < ITERATION_NANOS);
+        return (double) operations * elements;
+    }
+}
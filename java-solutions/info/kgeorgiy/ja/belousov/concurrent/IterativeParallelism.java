@@ -1,24 +1,46 @@
 package info.kgeorgiy.ja.belousov.concurrent;
 
+import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.concurrent.ScalarIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiFunction;
+import java.util.function.DoublePredicate;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 
 /**
  * A class that implements iterative parallelism computing for
- * scalar methods described in {@link ScalarIP} interface
+ * scalar methods described in {@link ScalarIP} interface and list methods described in {@link ListIP} interface.
+ * List results are assembled from the chunk results through {@link ChunkedList} without copying.
  *
  * @author Timofey Belousov
  */
-public class IterativeParallelism implements ScalarIP {
+public class IterativeParallelism implements ListIP {
+    /**
+     * Number of ranges per requested thread primitive arrays are split into, more ranges balance skewed workloads better
+     */
+    private static final int RANGES_PER_THREAD = 8;
+    /**
+     * Number of elements short-circuiting primitive kernels process between polls of the cancellation token
+     */
+    private static final int CANCELLATION_BLOCK = 1 << 12;
+
     private final ParallelMapper mapper;
 
     public IterativeParallelism(ParallelMapper mapper) {
@@ -43,29 +65,119 @@ public class IterativeParallelism implements ScalarIP {
         };
     }
 
+    /**
+     * Splits and solves the data, cancelling the {@code token} if the computation fails or is interrupted,
+     * so the remaining tasks are dropped. Solvers may cancel the token themselves to short-circuit.
+     */
     private <T, R> R splitAndMap(int threads, BiFunction<List<T>, Integer, List<List<T>>> splitter,
                                  Function<List<T>, Optional<R>> solver,
-                                 Function<List<R>, R> resultCombiner, List<T> data) throws InterruptedException {
-        List<List<T>> splitData = splitter.apply(data, threads);
-        if (mapper == null) {
-            try (ParallelMapperImpl localMapper = new ParallelMapperImpl(threads)) {
-                return computeThreaded(localMapper, splitData, solver, resultCombiner);
+                                 Function<List<R>, R> resultCombiner, List<T> data,
+                                 CancellationToken token) throws InterruptedException {
+        try {
+            if (mapper == null) {
+                return forkJoin(threads, solver, resultCombiner, data, token);
+            }
+            return computeThreaded(mapper, splitter.apply(data, threads), solver, resultCombiner, token);
+        } catch (InterruptedException | RuntimeException e) {
+            token.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * A task that recursively splits its part of the list in two, along with the number of leaves it is solved by.
+     * Results of the halves are merged with the same combiner that merges the results of the threads.
+     */
+    // Tasks only live within a single call and are never serialized
+    @SuppressWarnings("serial")
+    private static final class ReductionTask<T, R> extends RecursiveTask<Optional<R>> {
+        private final List<T> data;
+        private final int leaves;
+        private final Function<List<T>, Optional<R>> solver;
+        private final Function<List<R>, R> resultCombiner;
+        private final CancellationToken token;
+
+        private ReductionTask(List<T> data, int leaves, Function<List<T>, Optional<R>> solver,
+                              Function<List<R>, R> resultCombiner, CancellationToken token) {
+            this.data = data;
+            this.leaves = leaves;
+            this.solver = solver;
+            this.resultCombiner = resultCombiner;
+            this.token = token;
+        }
+
+        @Override
+        protected Optional<R> compute() {
+            if (token.isCancelled()) {
+                return Optional.empty();
+            }
+            if (leaves <= 1) {
+                return solver.apply(data);
+            }
+
+            int leftLeaves = leaves / 2;
+            int middle = (int) ((long) data.size() * leftLeaves / leaves);
+            // The left half is computed in place, so a single worker scans the list in order
+            ReductionTask<T, R> right = new ReductionTask<>(data.subList(middle, data.size()), leaves - leftLeaves,
+                    solver, resultCombiner, token);
+            right.fork();
+            Optional<R> leftResult = new ReductionTask<>(data.subList(0, middle), leftLeaves,
+                    solver, resultCombiner, token).compute();
+            Optional<R> rightResult = right.join();
+
+            List<R> results = Stream.of(leftResult, rightResult).flatMap(Optional::stream).toList();
+            return results.isEmpty() ? Optional.empty() : Optional.of(resultCombiner.apply(results));
+        }
+    }
+
+    /**
+     * Solves the data on the common pool. The data is split into at most {@code threads} leaves,
+     * so no more than {@code threads} pool workers are busy with the call, and no threads are created for it.
+     */
+    private static <T, R> R forkJoin(int threads, Function<List<T>, Optional<R>> solver,
+                                     Function<List<R>, R> resultCombiner, List<T> data,
+                                     CancellationToken token) throws InterruptedException {
+        int leaves = Math.min(threads, data.size());
+        if (leaves <= 1) {
+            return resultCombiner.apply(solver.apply(data).stream().toList());
+        }
+
+        ForkJoinTask<Optional<R>> task = ForkJoinPool.commonPool()
+                .submit(new ReductionTask<>(data, leaves, solver, resultCombiner, token));
+        try {
+            return resultCombiner.apply(task.get().stream().toList());
+        } catch (InterruptedException e) {
+            // ForkJoinTask.cancel does not interrupt running leaves, so they are stopped by the token instead
+            token.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
         }
-        return computeThreaded(mapper, splitData, solver, resultCombiner);
     }
 
     private <T, R> R computeThreaded(ParallelMapper mapper, List<List<T>> splitData, Function<List<T>, Optional<R>> solver,
-                                     Function<List<R>, R> resultCombiner) throws InterruptedException {
-        ArrayList<Optional<R>> threadSolveResults = new ArrayList<>(mapper.map(solver, splitData));
+                                     Function<List<R>, R> resultCombiner, CancellationToken token) throws InterruptedException {
+        // Only our own mapper can drop the queued tasks, others are stopped by the solvers polling the token
+        List<Optional<R>> threadSolveResults = mapper instanceof ParallelMapperImpl impl
+                ? impl.map(solver, splitData, token)
+                : mapper.map(solver, splitData);
 
-        List<R> preparedResults = threadSolveResults.stream().filter(Optional::isPresent).map(Optional::get).toList();
+        // Results of the dropped tasks are null
+        List<R> preparedResults = threadSolveResults.stream()
+                .filter(Objects::nonNull).filter(Optional::isPresent).map(Optional::get).toList();
 
         return resultCombiner.apply(preparedResults);
     }
 
     @Override
     public <T> T maximum(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
         return splitAndMap(threads, listSplitter(), (data) -> {
             T curMax = null;
             for (T datum : data) {
@@ -73,6 +185,9 @@ public class IterativeParallelism implements ScalarIP {
                     Thread.currentThread().interrupt();
                     break;
                 }
+                if (token.isCancelled()) {
+                    break;
+                }
 
                 if (curMax == null) {
                     curMax = datum;
@@ -81,7 +196,7 @@ public class IterativeParallelism implements ScalarIP {
                 }
             }
             return Optional.ofNullable(curMax);
-        }, (threadedResult) -> threadedResult.stream().max(comparator).orElseThrow(), values);
+        }, (threadedResult) -> threadedResult.stream().max(comparator).orElseThrow(), values, token);
     }
 
     @Override
@@ -96,28 +211,29 @@ public class IterativeParallelism implements ScalarIP {
 
     @Override
     public <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        SharedWorkerState sharedState = new SharedWorkerState();
+        CancellationToken token = new CancellationToken();
         return splitAndMap(threads, listSplitter(), (data) -> {
             for (T datum : data) {
                 if (Thread.interrupted()) {
                     Thread.currentThread().interrupt();
                     break;
                 }
-                if (sharedState.isFinished()) {
+                if (token.isCancelled()) {
                     break;
                 }
 
                 if (predicate.test(datum)) {
-                    sharedState.setFinished();
+                    token.cancel();
                     return Optional.of(true);
                 }
             }
             return Optional.of(false);
-        }, threadedResult -> threadedResult.stream().anyMatch(val -> val), values);
+        }, threadedResult -> threadedResult.stream().anyMatch(val -> val), values, token);
     }
 
     @Override
     public <T> int count(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
         return splitAndMap(threads, listSplitter(), (data) -> {
             int count = 0;
             for (T datum : data) {
@@ -125,12 +241,596 @@ public class IterativeParallelism implements ScalarIP {
                     Thread.currentThread().interrupt();
                     break;
                 }
+                if (token.isCancelled()) {
+                    break;
+                }
 
                 if (predicate.test(datum)) {
                     count++;
                 }
             }
             return Optional.of(count);
-        }, threadedResult -> threadedResult.stream().mapToInt(Integer::intValue).sum(), values);
+        }, threadedResult -> threadedResult.stream().mapToInt(Integer::intValue).sum(), values, token);
+    }
+
+    @Override
+    public String join(int threads, List<?> values) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        List<String> parts = splitAndMap(threads, listSplitter(), (data) -> {
+            StringBuilder builder = new StringBuilder();
+            for (Object datum : data) {
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (token.isCancelled()) {
+                    break;
+                }
+
+                builder.append(datum);
+            }
+            return Optional.of(List.of(builder.toString()));
+        }, ChunkedList::new, values, token);
+        return String.join("", parts);
+    }
+
+    @Override
+    public <T> List<T> filter(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        return splitAndMap(threads, listSplitter(), (data) -> {
+            List<T> result = new ArrayList<>();
+            for (T datum : data) {
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (token.isCancelled()) {
+                    break;
+                }
+
+                if (predicate.test(datum)) {
+                    result.add(datum);
+                }
+            }
+            return Optional.of(result);
+        }, ChunkedList::new, values, token);
+    }
+
+    @Override
+    public <T, U> List<U> map(int threads, List<? extends T> values, Function<? super T, ? extends U> f) throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        return splitAndMap(threads, listSplitter(), (data) -> {
+            List<U> result = new ArrayList<>(data.size());
+            for (T datum : data) {
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (token.isCancelled()) {
+                    break;
+                }
+
+                result.add(f.apply(datum));
+            }
+            return Optional.of(result);
+        }, ChunkedList::new, values, token);
+    }
+
+    /**
+     * Reduces values using the monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param monoid  monoid to use
+     * @param <T>     value type
+     * @return values reduced by the monoid operator, or the monoid identity if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> T reduce(int threads, List<T> values, Monoid<T> monoid) throws InterruptedException {
+        return mapReduce(threads, values, Function.identity(), monoid);
+    }
+
+    /**
+     * Maps and reduces values using the monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    mapping function
+     * @param monoid  monoid to use
+     * @param <T>     value type
+     * @param <R>     result type
+     * @return mapped values reduced by the monoid operator, or the monoid identity if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T, R> R mapReduce(int threads, List<T> values, Function<? super T, ? extends R> lift,
+                              Monoid<R> monoid) throws InterruptedException {
+        Function<List<R>, R> combiner = results -> {
+            R result = monoid.identity();
+            for (R value : results) {
+                result = monoid.operator().apply(result, value);
+            }
+            return result;
+        };
+        CancellationToken token = new CancellationToken();
+        return splitAndMap(threads, listSplitter(), (data) -> {
+            R result = monoid.identity();
+            for (T datum : data) {
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (token.isCancelled()) {
+                    break;
+                }
+
+                result = monoid.operator().apply(result, lift.apply(datum));
+            }
+            return Optional.of(result);
+        }, combiner, values, token);
+    }
+
+    /**
+     * A half-open range {@code [from, to)} of array indices processed by a single kernel call
+     *
+     * @param index number of the range, results of the ranges are stored by it
+     * @param from  first index, inclusive
+     * @param to    last index, exclusive
+     */
+    private record Range(int index, int from, int to) {
+    }
+
+    /**
+     * A loop over a range of a primitive array, storing its result into a slot of a primitive array by the range number.
+     * Every overload has its own kernel, so the loop is monomorphic and its accumulator stays in a register.
+     */
+    @FunctionalInterface
+    private interface RangeKernel {
+        void apply(int range, int from, int to);
+    }
+
+    private static int rangeCount(int threads, int length) {
+        return Math.min(length, Math.max(1, threads) * RANGES_PER_THREAD);
+    }
+
+    /**
+     * Runs the kernel over the ranges of the array indices, on the same infrastructure as list operations
+     */
+    private void forEachRange(int threads, int length, RangeKernel kernel,
+                              CancellationToken token) throws InterruptedException {
+        int count = rangeCount(threads, length);
+        List<Range> ranges = new ArrayList<>(count);
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = from + length / count + (i < length % count ? 1 : 0);
+            ranges.add(new Range(i, from, to));
+            from = to;
+        }
+
+        this.<Range, Void>splitAndMap(threads, listSplitter(), (data) -> {
+            for (Range range : data) {
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (token.isCancelled()) {
+                    break;
+                }
+
+                kernel.apply(range.index(), range.from(), range.to());
+            }
+            return Optional.empty();
+        }, results -> null, ranges, token);
+    }
+
+    /**
+     * Returns the end of the block starting at {@code from}, short-circuiting kernels poll the token once per block
+     */
+    private static int blockEnd(int from, int to) {
+        return to - from > CANCELLATION_BLOCK ? from + CANCELLATION_BLOCK : to;
+    }
+
+    private static void requireNonEmpty(int length) {
+        if (length == 0) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns maximum value of the array.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public int maximum(int threads, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        int[] maxima = new int[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            int max = values[from];
+            for (int i = from + 1; i < to; i++) {
+                max = Math.max(max, values[i]);
+            }
+            maxima[range] = max;
+        }, new CancellationToken());
+        return Arrays.stream(maxima).max().orElseThrow();
+    }
+
+    /**
+     * Returns minimum value of the array.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public int minimum(int threads, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        int[] minima = new int[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            int min = values[from];
+            for (int i = from + 1; i < to; i++) {
+                min = Math.min(min, values[i]);
+            }
+            minima[range] = min;
+        }, new CancellationToken());
+        return Arrays.stream(minima).min().orElseThrow();
+    }
+
+    /**
+     * Returns sum of the array values, computed without overflow of {@code int}.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of given values
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long sum(int threads, int[] values) throws InterruptedException {
+        long[] sums = new long[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            sums[range] = sum;
+        }, new CancellationToken());
+        return sum(sums);
+    }
+
+    /**
+     * Returns number of array values satisfying the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        int[] counts = new int[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    count++;
+                }
+            }
+            counts[range] = count;
+        }, new CancellationToken());
+        return sum(counts);
+    }
+
+    /**
+     * Checks whether any array value satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        // The token is only cancelled by a match here, failures are thrown
+        CancellationToken token = new CancellationToken();
+        forEachRange(threads, values.length, (range, from, to) -> {
+            for (int block = from, end; block < to && !token.isCancelled(); block = end) {
+                end = blockEnd(block, to);
+                for (int i = block; i < end; i++) {
+                    if (predicate.test(values[i])) {
+                        token.cancel();
+                        return;
+                    }
+                }
+            }
+        }, token);
+        return token.isCancelled();
+    }
+
+    /**
+     * Checks whether all array values satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return !any(threads, values, predicate.negate());
+    }
+
+    /**
+     * Returns maximum value of the array.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public long maximum(int threads, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        long[] maxima = new long[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            long max = values[from];
+            for (int i = from + 1; i < to; i++) {
+                max = Math.max(max, values[i]);
+            }
+            maxima[range] = max;
+        }, new CancellationToken());
+        return Arrays.stream(maxima).max().orElseThrow();
+    }
+
+    /**
+     * Returns minimum value of the array.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public long minimum(int threads, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        long[] minima = new long[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            long min = values[from];
+            for (int i = from + 1; i < to; i++) {
+                min = Math.min(min, values[i]);
+            }
+            minima[range] = min;
+        }, new CancellationToken());
+        return Arrays.stream(minima).min().orElseThrow();
+    }
+
+    /**
+     * Returns sum of the array values. Overflow wraps around as for {@code long} addition.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of given values
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long sum(int threads, long[] values) throws InterruptedException {
+        long[] sums = new long[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            sums[range] = sum;
+        }, new CancellationToken());
+        return sum(sums);
+    }
+
+    /**
+     * Returns number of array values satisfying the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        int[] counts = new int[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    count++;
+                }
+            }
+            counts[range] = count;
+        }, new CancellationToken());
+        return sum(counts);
+    }
+
+    /**
+     * Checks whether any array value satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        // The token is only cancelled by a match here, failures are thrown
+        CancellationToken token = new CancellationToken();
+        forEachRange(threads, values.length, (range, from, to) -> {
+            for (int block = from, end; block < to && !token.isCancelled(); block = end) {
+                end = blockEnd(block, to);
+                for (int i = block; i < end; i++) {
+                    if (predicate.test(values[i])) {
+                        token.cancel();
+                        return;
+                    }
+                }
+            }
+        }, token);
+        return token.isCancelled();
+    }
+
+    /**
+     * Checks whether all array values satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return !any(threads, values, predicate.negate());
+    }
+
+    /**
+     * Returns maximum value of the array, or {@code NaN} if any of the values is {@code NaN}.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public double maximum(int threads, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        double[] maxima = new double[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            // Math.max propagates NaN and orders -0.0 below 0.0
+            double max = values[from];
+            for (int i = from + 1; i < to; i++) {
+                max = Math.max(max, values[i]);
+            }
+            maxima[range] = max;
+        }, new CancellationToken());
+        return Arrays.stream(maxima).reduce(Math::max).orElseThrow();
+    }
+
+    /**
+     * Returns minimum value of the array, or {@code NaN} if any of the values is {@code NaN}.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException   if executing thread was interrupted
+     * @throws NoSuchElementException if no values are given
+     */
+    public double minimum(int threads, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        double[] minima = new double[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            double min = values[from];
+            for (int i = from + 1; i < to; i++) {
+                min = Math.min(min, values[i]);
+            }
+            minima[range] = min;
+        }, new CancellationToken());
+        return Arrays.stream(minima).reduce(Math::min).orElseThrow();
+    }
+
+    /**
+     * Returns sum of the array values.
+     * The values are summed in ranges, so rounding may differ from the sequential sum.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of given values
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double sum(int threads, double[] values) throws InterruptedException {
+        double[] sums = new double[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            sums[range] = sum;
+        }, new CancellationToken());
+        double sum = 0;
+        for (double value : sums) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns number of array values satisfying the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return number of values satisfying the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int count(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        int[] counts = new int[rangeCount(threads, values.length)];
+        forEachRange(threads, values.length, (range, from, to) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    count++;
+                }
+            }
+            counts[range] = count;
+        }, new CancellationToken());
+        return sum(counts);
+    }
+
+    /**
+     * Checks whether any array value satisfies the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        // The token is only cancelled by a match here, failures are thrown
+        CancellationToken token = new CancellationToken();
+        forEachRange(threads, values.length, (range, from, to) -> {
+            for (int block = from, end; block < to && !token.isCancelled(); block = end) {
+                end = blockEnd(block, to);
+                for (int i = block; i < end; i++) {
+                    if (predicate.test(values[i])) {
+                        token.cancel();
+                        return;
+                    }
+                }
+            }
+        }, token);
+        return token.isCancelled();
+    }
+
+    /**
+     * Checks whether all array values satisfy the predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy the predicate
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return !any(threads, values, predicate.negate());
     }
-}
\ No newline at end of file
+}
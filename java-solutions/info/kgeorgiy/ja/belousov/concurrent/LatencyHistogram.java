@@ -0,0 +1,77 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe latency histogram with power-of-two microsecond buckets.
+ * Bucket {@code i} counts latencies in {@code [2^(i-1), 2^i)} microseconds, the last bucket is unbounded.
+ * Buckets are striped counters, so recording does not contend between threads.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single latency
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+    }
+
+    private static String getBucketName(int bucket) {
+        return bucket == BUCKETS - 1 ? "inf" : "<" + (1L << bucket) + "us";
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile
+     *
+     * @param percentile percentile, from {@code 0} to {@code 1}
+     * @return bucket name, or {@code "n/a"} if nothing was recorded
+     */
+    public String getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (total > 0 && seen >= Math.ceil(total * percentile)) {
+                return getBucketName(i);
+            }
+        }
+        return "n/a";
+    }
+
+    /**
+     * Returns the current counts by bucket upper bound
+     *
+     * @return map from bucket name to the number of recorded latencies, in increasing bucket order
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            result.put(getBucketName(i), buckets[i].sum());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,293 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Opt-in counters of a {@link ParallelMapperImpl}, both aggregated and per {@code map} call.
+ * All counters are striped, so recording does not add contention between the workers.
+ * Aggregated values are exposed via JMX (see {@link MapperMetricsMXBean}) and {@link #snapshot()},
+ * per call values are published to the {@link #setCallListener(Consumer) call listener} and {@link #getLastCall()}.
+ */
+public class MapperMetrics implements MapperMetricsMXBean {
+    private static final String OBJECT_NAME = "info.kgeorgiy.ja.belousov.concurrent:type=ParallelMapper,name=mapper-";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final long startNanos = System.nanoTime();
+    private final IntSupplier queueDepth;
+    private final LongAdder mapCalls = new LongAdder();
+    private final LongAdder elements = new LongAdder();
+    private final LongAdder droppedTasks = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder parks = new LongAdder();
+    private final LongAdder[] workerTasks;
+    private final LongAdder[] workerBusyNanos;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final LatencyHistogram mapLatency = new LatencyHistogram();
+
+    private volatile Consumer<CallSnapshot> callListener;
+    private volatile CallSnapshot lastCall;
+    private ObjectName registeredName;
+
+    /**
+     * Counters of a single {@code map} call
+     *
+     * @param elements          number of mapped elements
+     * @param tasks             number of chunks the elements were split into
+     * @param droppedTasks      number of chunks dropped because the call was cancelled or failed
+     * @param maxQueueWaitNanos maximal time a chunk of this call waited in a deque
+     * @param busyNanos         total time the workers spent running chunks of this call
+     * @param durationNanos     time from the submission to the return of the call
+     */
+    public record CallSnapshot(int elements, int tasks, long droppedTasks, long maxQueueWaitNanos,
+                               long busyNanos, long durationNanos) {
+    }
+
+    /**
+     * A consistent enough copy of the aggregated counters
+     *
+     * @param mapCalls        number of completed {@code map} calls
+     * @param elements        number of mapped elements
+     * @param tasks           number of executed chunks
+     * @param droppedTasks    number of dropped chunks
+     * @param steals          number of stolen chunks
+     * @param parks           number of times workers parked
+     * @param queueDepth      number of chunks waiting in the deques
+     * @param workerTasks     number of chunks executed by each worker
+     * @param workerBusyRatio fraction of time each worker spent running chunks
+     * @param queueWait       queue wait histogram
+     * @param taskLatency     chunk execution time histogram
+     * @param mapLatency      {@code map} call duration histogram
+     */
+    public record Snapshot(long mapCalls, long elements, long tasks, long droppedTasks, long steals, long parks,
+                           int queueDepth, long[] workerTasks, double[] workerBusyRatio,
+                           Map<String, Long> queueWait, Map<String, Long> taskLatency, Map<String, Long> mapLatency) {
+    }
+
+    /**
+     * Collects the metrics of a single {@code map} call, shared by its chunks
+     */
+    public final class CallMetrics {
+        private final long startNanos = System.nanoTime();
+        private final int elements;
+        private final int tasks;
+        private final LongAdder droppedTasks = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Long::max, 0);
+
+        private CallMetrics(int elements, int tasks) {
+            this.elements = elements;
+            this.tasks = tasks;
+        }
+
+        /**
+         * Records start of a chunk of this call
+         *
+         * @param enqueuedNanos time the chunk was pushed onto a worker deque
+         * @return chunk start time, to be passed to {@link #recordTask}
+         */
+        long startTask(long enqueuedNanos) {
+            long now = System.nanoTime();
+            queueWait.record(now - enqueuedNanos);
+            maxQueueWaitNanos.accumulate(now - enqueuedNanos);
+            return now;
+        }
+
+        void recordTask(long taskStartNanos) {
+            long nanos = System.nanoTime() - taskStartNanos;
+            taskLatency.record(nanos);
+            busyNanos.add(nanos);
+        }
+
+        void recordDropped() {
+            droppedTasks.increment();
+            MapperMetrics.this.droppedTasks.increment();
+        }
+
+        void finish() {
+            long duration = System.nanoTime() - startNanos;
+            mapCalls.increment();
+            MapperMetrics.this.elements.add(elements);
+            mapLatency.record(duration);
+
+            CallSnapshot snapshot = new CallSnapshot(elements, tasks, droppedTasks.sum(), maxQueueWaitNanos.get(),
+                    busyNanos.sum(), duration);
+            lastCall = snapshot;
+            Consumer<CallSnapshot> listener = callListener;
+            if (listener != null) {
+                listener.accept(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Creates metrics for a mapper with the given number of workers
+     *
+     * @param workers    number of workers
+     * @param queueDepth supplier of the current number of queued chunks
+     */
+    MapperMetrics(int workers, IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+        workerTasks = new LongAdder[workers];
+        workerBusyNanos = new LongAdder[workers];
+        for (int i = 0; i < workers; i++) {
+            workerTasks[i] = new LongAdder();
+            workerBusyNanos[i] = new LongAdder();
+        }
+    }
+
+    CallMetrics startCall(int elements, int tasks) {
+        return new CallMetrics(elements, tasks);
+    }
+
+    void recordWorkerTask(int worker, long nanos) {
+        workerBusyNanos[worker].add(nanos);
+        workerTasks[worker].increment();
+    }
+
+    void recordSteal() {
+        steals.increment();
+    }
+
+    void recordPark() {
+        parks.increment();
+    }
+
+    /**
+     * Registers this instance in the platform MBean server under a unique name.
+     * Failures are reported and otherwise ignored.
+     */
+    void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.format("Unable to register mapper metrics MBean: %s%n", e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters this instance from the platform MBean server, if it was registered
+     */
+    void unregister() {
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException ignored) {
+            }
+            registeredName = null;
+        }
+    }
+
+    /**
+     * Sets a listener that receives counters of every completed {@code map} call.
+     * The listener is called by the thread that called {@code map}, so it must be fast.
+     *
+     * @param listener listener, or {@code null} to remove it
+     */
+    public void setCallListener(Consumer<CallSnapshot> listener) {
+        callListener = listener;
+    }
+
+    /**
+     * Returns counters of the last completed {@code map} call
+     *
+     * @return counters, or {@code null} if no call was completed yet
+     */
+    public CallSnapshot getLastCall() {
+        return lastCall;
+    }
+
+    /**
+     * Copies the aggregated counters
+     *
+     * @return snapshot of the counters
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getMapCalls(), getElements(), getTasks(), getDroppedTasks(), getSteals(), getParks(),
+                getQueueDepth(), getWorkerTasks(), getWorkerBusyRatio(),
+                getQueueWaitHistogram(), getTaskLatencyHistogram(), getMapLatencyHistogram());
+    }
+
+    @Override
+    public long getMapCalls() {
+        return mapCalls.sum();
+    }
+
+    @Override
+    public long getElements() {
+        return elements.sum();
+    }
+
+    @Override
+    public long getTasks() {
+        long total = 0;
+        for (LongAdder tasks : workerTasks) {
+            total += tasks.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getDroppedTasks() {
+        return droppedTasks.sum();
+    }
+
+    @Override
+    public long getSteals() {
+        return steals.sum();
+    }
+
+    @Override
+    public long getParks() {
+        return parks.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public double[] getWorkerBusyRatio() {
+        double elapsed = Math.max(1, System.nanoTime() - startNanos);
+        double[] result = new double[workerBusyNanos.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = workerBusyNanos[i].sum() / elapsed;
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getWorkerTasks() {
+        long[] result = new long[workerTasks.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = workerTasks[i].sum();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getQueueWaitHistogram() {
+        return queueWait.toMap();
+    }
+
+    @Override
+    public Map<String, Long> getTaskLatencyHistogram() {
+        return taskLatency.toMap();
+    }
+
+    @Override
+    public Map<String, Long> getMapLatencyHistogram() {
+        return mapLatency.toMap();
+    }
+}
@@ -0,0 +1,68 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link MapperMetrics}
+ */
+public interface MapperMetricsMXBean {
+    /**
+     * @return number of completed {@code map} calls
+     */
+    long getMapCalls();
+
+    /**
+     * @return number of mapped elements
+     */
+    long getElements();
+
+    /**
+     * @return number of executed chunks
+     */
+    long getTasks();
+
+    /**
+     * @return number of chunks dropped because their call was cancelled or failed
+     */
+    long getDroppedTasks();
+
+    /**
+     * @return number of chunks taken from another worker deque
+     */
+    long getSteals();
+
+    /**
+     * @return number of times workers parked waiting for tasks
+     */
+    long getParks();
+
+    /**
+     * @return number of chunks currently waiting in the worker deques
+     */
+    int getQueueDepth();
+
+    /**
+     * @return fraction of time each worker spent running chunks since the metrics were created
+     */
+    double[] getWorkerBusyRatio();
+
+    /**
+     * @return number of chunks executed by each worker
+     */
+    long[] getWorkerTasks();
+
+    /**
+     * @return number of chunks by the upper bound of time they spent in a deque before being started
+     */
+    Map<String, Long> getQueueWaitHistogram();
+
+    /**
+     * @return number of chunks by the upper bound of their execution time
+     */
+    Map<String, Long> getTaskLatencyHistogram();
+
+    /**
+     * @return number of {@code map} calls by the upper bound of their duration
+     */
+    Map<String, Long> getMapLatencyHistogram();
+}
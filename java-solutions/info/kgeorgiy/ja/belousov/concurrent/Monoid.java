@@ -0,0 +1,14 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * An associative operation with an identity element, used by the parallel reductions of {@link IterativeParallelism}.
+ * Since the values are reduced in chunks, the result is well-defined only if the operator is associative.
+ *
+ * @param identity identity element of the operator
+ * @param operator associative binary operator
+ * @param <T>      type of the values
+ */
+public record Monoid<T>(T identity, BinaryOperator<T> operator) {
+}
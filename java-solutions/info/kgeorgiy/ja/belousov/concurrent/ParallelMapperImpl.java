@@ -3,6 +3,14 @@ package info.kgeorgiy.ja.belousov.concurrent;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
 
@@ -13,8 +21,127 @@ import java.util.function.Function;
  * @author Timofey Belousov
  */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final List<Thread> threads;
-    private final Queue<Runnable> tasks;
+    private final List<Worker> workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final MapperMetrics metrics;
+    /**
+     * Queue slots of the bounded mode, or {@code null} if the queue is unbounded
+     */
+    private final Semaphore queueSlots;
+    private final int capacity;
+    private final AdmissionPolicy admissionPolicy;
+
+    /**
+     * What a {@code map} call does when the bounded queue has no room for its chunks
+     */
+    public enum AdmissionPolicy {
+        /**
+         * Wait until other calls complete and free their queue slots
+         */
+        BLOCK,
+        /**
+         * Throw {@link RejectedExecutionException} immediately
+         */
+        FAIL_FAST,
+        /**
+         * Process the whole call in the calling thread
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Number of chunks per worker used when elements are expensive enough, for load balancing
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+    /**
+     * Minimal average chunk duration: cheaper elements are grouped into larger chunks
+     */
+    private static final long MIN_CHUNK_NANOS = 50_000;
+    /**
+     * Observed average cost of a single element in nanoseconds, or {@code -1} if nothing was observed yet
+     */
+    private volatile long elementNanos = -1;
+
+    /**
+     * A chunk of a {@code map} call
+     */
+    @FunctionalInterface
+    private interface Task {
+        /**
+         * @param enqueuedNanos time the task was pushed onto a worker deque
+         */
+        void run(long enqueuedNanos);
+    }
+
+    /**
+     * A task in a worker deque, stamped when it was pushed there
+     */
+    private record QueuedTask(Task task, long enqueuedNanos) {
+    }
+
+    /**
+     * A worker thread with its own task deque.
+     * Tasks are taken from the head of the own deque, and stolen from the tails of the other workers deques
+     * when the own one is empty. Idle worker parks until new tasks are submitted.
+     */
+    private final class Worker implements Runnable {
+        private final int index;
+        private final Deque<QueuedTask> tasks = new ConcurrentLinkedDeque<>();
+        private final Thread thread = new Thread(this);
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private QueuedTask findTask() {
+            QueuedTask task = tasks.pollFirst();
+            for (int i = 1; task == null && i < workers.size(); i++) {
+                task = workers.get((index + i) % workers.size()).tasks.pollLast();
+                if (task != null && metrics != null) {
+                    metrics.recordSteal();
+                }
+            }
+            return task;
+        }
+
+        private void park() {
+            idleWorkers.add(this);
+            // Re-check after becoming visible as idle: a task submitted before that would not wake this worker
+            if (workers.stream().allMatch(worker -> worker.tasks.isEmpty())) {
+                if (metrics != null) {
+                    metrics.recordPark();
+                }
+                LockSupport.park(this);
+            }
+            idleWorkers.remove(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    QueuedTask task = findTask();
+                    if (task == null) {
+                        park();
+                        continue;
+                    }
+
+                    long start = metrics != null ? System.nanoTime() : 0;
+                    try {
+                        task.task().run(task.enqueuedNanos());
+                    } catch (RuntimeException ignored) {
+                    }
+                    if (metrics != null) {
+                        metrics.recordWorkerTask(index, System.nanoTime() - start);
+                    }
+                }
+            } finally {
+                // Восстановление флага прерывания
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
     /**
      * A constructor that creates an instance of {@link ParallelMapperImpl} that
@@ -25,79 +152,294 @@ public class ParallelMapperImpl implements ParallelMapper {
      * @param threads_count number of treads to create
      */
     public ParallelMapperImpl(int threads_count) {
-        threads = new ArrayList<>(threads_count);
-        tasks = new ArrayDeque<>();
+        this(threads_count, false);
+    }
+
+    /**
+     * A constructor that creates an instance of {@link ParallelMapperImpl} that
+     * uses {@code threads_count} threads for parallel computing, optionally collecting {@link MapperMetrics}.
+     * Collected metrics are registered via JMX until the mapper is closed.
+     *
+     * @param threads_count  number of treads to create
+     * @param collectMetrics whether to collect metrics
+     */
+    public ParallelMapperImpl(int threads_count, boolean collectMetrics) {
+        this(threads_count, 0, AdmissionPolicy.BLOCK, collectMetrics);
+    }
+
+    /**
+     * A constructor that creates an instance of {@link ParallelMapperImpl} with a bounded queue.
+     * Each {@code map} call occupies up to one queue slot per thread while it is running, and enqueues at most
+     * that many chunks at once: the next chunk of a call is enqueued when one of its chunks completes,
+     * behind the chunks of the other calls. This way concurrent calls are served round-robin,
+     * and a huge call cannot starve small ones.
+     * When there are not enough free slots, the call is handled according to {@code admissionPolicy}.
+     * A mapper without threads processes every call in the calling thread.
+     *
+     * @param threads_count   number of treads to create
+     * @param capacity        number of queue slots, or non-positive number for unbounded queue
+     *                        without admission control and round-robin scheduling
+     * @param admissionPolicy what to do when the queue is full
+     * @param collectMetrics  whether to collect metrics
+     */
+    public ParallelMapperImpl(int threads_count, int capacity, AdmissionPolicy admissionPolicy, boolean collectMetrics) {
+        this.capacity = capacity;
+        this.queueSlots = capacity > 0 ? new Semaphore(capacity, true) : null;
+        this.admissionPolicy = Objects.requireNonNull(admissionPolicy);
+        if (collectMetrics) {
+            metrics = new MapperMetrics(threads_count, this::getQueueDepth);
+            metrics.register();
+        } else {
+            metrics = null;
+        }
 
+        List<Worker> workers = new ArrayList<>(threads_count);
         for (int i = 0; i < threads_count; i++) {
-            threads.add(new Thread(() -> {
-                try {
-                    while (!Thread.interrupted()) {
-                        Runnable task;
-                        synchronized (tasks) {
-                            while (tasks.isEmpty()) {
-                                tasks.wait();
-                            }
-                            task = tasks.poll();
-                        }
+            workers.add(new Worker(i));
+        }
+        this.workers = List.copyOf(workers);
 
-                        try {
-                            task.run();
-                        } catch (RuntimeException ignored) {
-                        }
-                    }
-                } catch (InterruptedException ignored) {
+        this.workers.forEach(worker -> worker.thread.start());
+    }
+
+    /**
+     * Returns metrics of this mapper
+     *
+     * @return metrics, or empty if the mapper was created without metrics
+     */
+    public Optional<MapperMetrics> getMetrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    private int getQueueDepth() {
+        return workers.stream().mapToInt(worker -> worker.tasks.size()).sum();
+    }
+
+    /**
+     * Distributes tasks between the workers deques round-robin and wakes up as many idle workers as needed
+     *
+     * @param tasks tasks to submit
+     */
+    private void submit(List<Task> tasks) {
+        int start = nextWorker.getAndAdd(tasks.size());
+        long now = System.nanoTime();
+        for (int i = 0; i < tasks.size(); i++) {
+            workers.get(Math.floorMod(start + i, workers.size())).tasks.addLast(new QueuedTask(tasks.get(i), now));
+        }
+
+        Worker idle;
+        for (int i = 0; i < tasks.size() && (idle = idleWorkers.poll()) != null; i++) {
+            LockSupport.unpark(idle.thread);
+        }
+    }
+
+    /**
+     * Acquires queue slots for a {@code map} call according to the admission policy
+     *
+     * @param slots number of slots to acquire
+     * @return {@code true} if the slots were acquired, {@code false} if the caller should run the call itself
+     * @throws InterruptedException       if interrupted while waiting for the slots
+     * @throws RejectedExecutionException if the queue is full and the policy is {@link AdmissionPolicy#FAIL_FAST}
+     */
+    private boolean admit(int slots) throws InterruptedException {
+        if (queueSlots == null) {
+            return true;
+        }
+        return switch (admissionPolicy) {
+            case BLOCK -> {
+                queueSlots.acquire(slots);
+                yield true;
+            }
+            case FAIL_FAST -> {
+                if (!queueSlots.tryAcquire(slots)) {
+                    throw new RejectedExecutionException("Mapper queue is full");
+                }
+                yield true;
+            }
+            case CALLER_RUNS -> queueSlots.tryAcquire(slots);
+        };
+    }
+
+    /**
+     * Chains the tasks, so that only {@code window} of them are submitted at once,
+     * and each completed task submits the next one
+     *
+     * @param tasks     tasks of a single {@code map} call
+     * @param window    number of tasks to submit at once
+     * @param afterLast action to run when the last of the tasks completes
+     * @return tasks to submit initially
+     */
+    private List<Task> window(List<Task> tasks, int window, Runnable afterLast) {
+        AtomicInteger next = new AtomicInteger(window);
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        List<Task> chained = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            chained.add(enqueuedNanos -> {
+                try {
+                    task.run(enqueuedNanos);
                 } finally {
-                    // Восстановление флага прерывания
-                    Thread.currentThread().interrupt();
+                    int index = next.getAndIncrement();
+                    if (index < tasks.size()) {
+                        submit(List.of(chained.get(index)));
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        afterLast.run();
+                    }
                 }
-            }));
+            });
+        }
+        return chained.subList(0, window);
+    }
+
+    /**
+     * Chooses the number of chunks to split {@code size} elements into.
+     * Without cost estimate, the elements are split into {@link #CHUNKS_PER_WORKER} chunks per worker
+     * for load balancing. Cheap elements are additionally grouped so that a chunk takes
+     * at least {@link #MIN_CHUNK_NANOS} on average. The estimate is shared by the calls with unrelated
+     * functions, so grouping never leaves fewer than one chunk per worker: a few expensive elements
+     * mapped after many cheap ones are still processed in parallel.
+     *
+     * @param size number of elements
+     * @return number of chunks, between {@code 1} and {@code size}
+     */
+    private int chunkCount(int size) {
+        int chunks = Math.min(size, workers.size() * CHUNKS_PER_WORKER);
+        long cost = elementNanos;
+        if (cost >= 0) {
+            long elementsPerChunk = Math.max(1, MIN_CHUNK_NANOS / Math.max(1, cost));
+            chunks = (int) Math.min(chunks, Math.max(Math.min(size, workers.size()), size / elementsPerChunk));
         }
+        return Math.max(chunks, 1);
+    }
 
-        threads.forEach(Thread::start);
+    /**
+     * Updates the per-element cost estimate with the cost observed by a completed chunk.
+     * Concurrent updates may be lost, which is fine for an estimate.
+     *
+     * @param nanos  time spent on the chunk
+     * @param length number of elements in the chunk
+     */
+    private void recordCost(long nanos, int length) {
+        long sample = nanos / length;
+        long cost = elementNanos;
+        elementNanos = cost < 0 ? sample : cost + (sample - cost) / 8;
     }
 
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        return map(f, args, new CancellationToken());
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args} in parallel, until the {@code token} is cancelled.
+     * After the cancellation, queued chunks are dropped without applying {@code f}, and the running chunks
+     * stop before the next element, so the elements left unprocessed are {@code null} in the result.
+     * The function may cancel the token itself, e.g. when the target element is found.
+     *
+     * @param f     function to apply
+     * @param args  arguments to apply function to
+     * @param token cancellation token of this call
+     * @param <T>   arguments type
+     * @param <R>   result type
+     * @return list of results, in the order of the arguments
+     * @throws InterruptedException if calling thread was interrupted
+     */
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args,
+                              CancellationToken token) throws InterruptedException {
         List<R> result = new ArrayList<>(Collections.nCopies(args.size(), null));
+        if (args.isEmpty()) {
+            return result;
+        }
 
-        ThreadSafeCounter progressCounter = new ThreadSafeCounter();
-        AtomicContainer<RuntimeException> exception = new AtomicContainer<>(null);
+        int chunks = chunkCount(args.size());
+        int chunkSize = args.size() / chunks;
+        int remainder = args.size() % chunks;
+        CompletionLatch latch = new CompletionLatch(chunks);
 
-        synchronized (tasks) {
-            for (int i = 0; i < args.size(); i++) {
-                int finalI = i;
-                tasks.add(() -> {
-                    try {
-                        result.set(finalI, f.apply(args.get(finalI)));
+        MapperMetrics.CallMetrics call = metrics != null ? metrics.startCall(args.size(), chunks) : null;
 
-                        synchronized (progressCounter) {
-                            progressCounter.increment();
-                            progressCounter.notify();
-                        }
-                    } catch (RuntimeException e) {
-                        exception.setValue(e);
-                        progressCounter.notify();
+        List<Task> tasks = new ArrayList<>(chunks);
+        for (int i = 0, from = 0; i < chunks; i++) {
+            int start = from;
+            int end = from + chunkSize + (i < remainder ? 1 : 0);
+            tasks.add(enqueuedNanos -> {
+                if (token.isCancelled() || latch.isFailed()) {
+                    if (call != null) {
+                        call.recordDropped();
                     }
-                });
-            }
-            tasks.notifyAll();
+                    latch.countDown();
+                    return;
+                }
+                long startTime = call != null ? call.startTask(enqueuedNanos) : System.nanoTime();
+                try {
+                    for (int j = start; j < end && !latch.isFailed() && !token.isCancelled(); j++) {
+                        result.set(j, f.apply(args.get(j)));
+                    }
+                } catch (RuntimeException e) {
+                    latch.fail(e);
+                    return;
+                }
+                if (!token.isCancelled()) {
+                    recordCost(System.nanoTime() - startTime, end - start);
+                }
+                if (call != null) {
+                    call.recordTask(startTime);
+                }
+                latch.countDown();
+            });
+            from = end;
         }
 
-        synchronized (progressCounter) {
-            while (progressCounter.getValue() < args.size()) {
-                RuntimeException e = exception.getValue();
-                if (e != null) {
-                    throw e;
+        Runnable releaseSlots = null;
+        try {
+            if (workers.isEmpty()) {
+                // Nobody would ever take the chunks
+                runInline(tasks);
+            } else {
+                // A call never needs more slots than there are, otherwise it would block forever
+                int slots = queueSlots != null ? Math.min(Math.min(chunks, workers.size()), capacity) : 0;
+                if (!admit(slots)) {
+                    runInline(tasks);
+                } else if (queueSlots != null) {
+                    AtomicBoolean released = new AtomicBoolean();
+                    releaseSlots = () -> {
+                        if (released.compareAndSet(false, true)) {
+                            queueSlots.release(slots);
+                        }
+                    };
+                    // If the call fails or is interrupted, the slots are held until its last chunk leaves the queue
+                    submit(window(tasks, slots, releaseSlots));
+                } else {
+                    submit(tasks);
                 }
-                progressCounter.wait();
             }
-            return result;
+            latch.await();
+            // Every chunk has completed, so none of them occupies the queue anymore
+            if (releaseSlots != null) {
+                releaseSlots.run();
+            }
+        } catch (InterruptedException e) {
+            // Let the remaining chunks of the abandoned call drop out quickly
+            latch.fail(new CancellationException("Interrupted"));
+            throw e;
+        } finally {
+            if (call != null) {
+                call.finish();
+            }
+        }
+        return result;
+    }
+
+    private static void runInline(List<Task> tasks) {
+        for (Task task : tasks) {
+            task.run(System.nanoTime());
         }
     }
 
     @Override
     public void close() {
-        for (Thread thread : threads) {
+        for (Worker worker : workers) {
+            Thread thread = worker.thread;
             if (thread.isAlive()) {
                 thread.interrupt();
                 try {
@@ -106,5 +448,8 @@ public class ParallelMapperImpl implements ParallelMapper {
                 }
             }
         }
+        if (metrics != null) {
+            metrics.unregister();
+        }
     }
 }
@@ -0,0 +1,122 @@
+package info.kgeorgiy.ja.belousov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A {@link ParallelMapper} implementation that runs the mapped function on virtual threads.
+ * Suits functions that block (e.g. on I/O) rather than burn CPU: a blocked element does not pin a platform thread.
+ * The number of elements processed simultaneously is limited by the {@code concurrency} given to the constructor,
+ * the limit is shared between concurrent {@link #map} calls.
+ * Ordering and exception semantics are the same as of {@link ParallelMapperImpl}.
+ * Requires JDK 21 or later; the class compiles on JDK 17, but cannot be instantiated there.
+ *
+ * @author Timofey Belousov
+ */
+public class VirtualParallelMapper implements ParallelMapper {
+    private final int concurrency;
+    private final Semaphore permits;
+    private final ThreadFactory factory;
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * A constructor that creates an instance of {@link VirtualParallelMapper} that
+     * processes at most {@code concurrency} elements at the same time.
+     *
+     * @param concurrency maximal number of simultaneously processed elements
+     * @throws UnsupportedOperationException if virtual threads are not supported by the JVM
+     */
+    public VirtualParallelMapper(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.permits = new Semaphore(concurrency);
+        this.factory = virtualThreadFactory();
+    }
+
+    /**
+     * Creates {@code Thread.ofVirtual().name("virtual-mapper-", 0).factory()} reflectively,
+     * so the package still compiles on JDK 17
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object named = builder.getMethod("name", String.class, long.class)
+                    .invoke(Thread.class.getMethod("ofVirtual").invoke(null), "virtual-mapper-", 0L);
+            return (ThreadFactory) builder.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Mapper is closed");
+        }
+        List<R> result = new ArrayList<>(Collections.nCopies(args.size(), null));
+        if (args.isEmpty()) {
+            return result;
+        }
+
+        // Each thread takes the next unprocessed element, holding a permit only while applying the function
+        int count = Math.min(args.size(), concurrency);
+        AtomicInteger next = new AtomicInteger();
+        CompletionLatch latch = new CompletionLatch(count);
+        List<Thread> callThreads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Thread thread = factory.newThread(() -> {
+                try {
+                    for (int j; (j = next.getAndIncrement()) < args.size() && !latch.isFailed(); ) {
+                        permits.acquire();
+                        try {
+                            result.set(j, f.apply(args.get(j)));
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    latch.countDown();
+                } catch (RuntimeException e) {
+                    latch.fail(e);
+                } catch (InterruptedException e) {
+                    latch.fail(new IllegalStateException("Mapper is closed", e));
+                } finally {
+                    threads.remove(Thread.currentThread());
+                }
+            });
+            threads.add(thread);
+            callThreads.add(thread);
+        }
+        callThreads.forEach(Thread::start);
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            callThreads.forEach(Thread::interrupt);
+            throw e;
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package info.kgeorgiy.ja.belousov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking counterpart of {@link Downloader}.
+ * Implementations must not block the calling thread: the download is completed asynchronously,
+ * so the number of downloads in flight is not limited by the number of threads.
+ */
+@FunctionalInterface
+public interface AsyncDownloader {
+    /**
+     * Starts downloading the document
+     *
+     * @param url link to download from
+     * @return future completed with the document, or exceptionally with an {@link IOException}
+     */
+    CompletableFuture<Document> download(String url);
+
+    /**
+     * Adapts the blocking downloader, running its downloads on the given executor
+     *
+     * @param downloader blocking downloader
+     * @param executor   executor to block threads of
+     * @return asynchronous view of the downloader
+     */
+    static AsyncDownloader of(Downloader downloader, Executor executor) {
+        return url -> {
+            CompletableFuture<Document> future = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    future.complete(downloader.download(url));
+                } catch (Throwable e) {
+                    // Errors too, otherwise the future would never complete
+                    future.completeExceptionally(e);
+                }
+            });
+            return future;
+        };
+    }
+}
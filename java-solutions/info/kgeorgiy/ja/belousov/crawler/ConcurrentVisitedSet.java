@@ -0,0 +1,37 @@
+package info.kgeorgiy.ja.belousov.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact {@link VisitedSet} storing the URLs themselves in a {@link ConcurrentHashMap}.
+ * Lookups of visited URLs are lock-free, only insertion of a new URL may lock a single bin.
+ */
+public class ConcurrentVisitedSet implements VisitedSet {
+    private final ConcurrentMap<String, AtomicInteger> depths = new ConcurrentHashMap<>();
+
+    @Override
+    public int raise(String url, int depth) {
+        AtomicInteger cell = depths.get(url);
+        if (cell == null) {
+            cell = depths.putIfAbsent(url, new AtomicInteger(depth));
+            if (cell == null) {
+                return 0;
+            }
+        }
+
+        while (true) {
+            int previous = cell.get();
+            if (previous >= depth || cell.compareAndSet(previous, depth)) {
+                return previous;
+            }
+        }
+    }
+
+    @Override
+    public int get(String url) {
+        AtomicInteger cell = depths.get(url);
+        return cell == null ? 0 : cell.get();
+    }
+}
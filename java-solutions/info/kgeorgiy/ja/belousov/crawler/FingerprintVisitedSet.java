@@ -0,0 +1,215 @@
+package info.kgeorgiy.ja.belousov.crawler;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact {@link VisitedSet} storing 56-bit URL fingerprints instead of the URLs.
+ * <p>
+ * Every URL takes a single {@code long} slot of an open-addressing table with linear probing:
+ * the fingerprint in the upper 56 bits and the depth in the lower 8 bits. Slots are claimed and updated
+ * with compare-and-set, so the set is lock-free. The table is sized for the expected number of URLs
+ * at construction and is never resized: {@link IllegalStateException} is thrown when it is full.
+ * <p>
+ * Two different URLs with the same fingerprint are considered the same, so a URL may be skipped
+ * with probability about {@code n^2 / 2^57} for {@code n} URLs, e.g. {@code 10^-5} for a million URLs.
+ * <p>
+ * The table may be kept on the heap, off-heap in a direct buffer, or in a memory-mapped file.
+ */
+public class FingerprintVisitedSet implements VisitedSet {
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final int MAX_SLOTS = 1 << 28;
+    /**
+     * Byte buffers are indexed by {@code int}, so their tables are limited to {@code 2^30} bytes
+     */
+    private static final int MAX_BUFFER_SLOTS = 1 << 27;
+    private static final VarHandle BUFFER_LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Table table;
+    private final int mask;
+
+    /**
+     * Storage of the slots
+     */
+    private interface Table extends AutoCloseable {
+        long get(int index);
+
+        boolean compareAndSet(int index, long expected, long value);
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private FingerprintVisitedSet(int slots, Table table) {
+        this.table = table;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Returns the number of slots for the expected number of URLs: a power of two, at most half full
+     */
+    private static int slots(long expectedUrls, int maxSlots) {
+        long slots = Long.highestOneBit(Math.max(16, expectedUrls * 2 - 1)) << 1;
+        if (expectedUrls > maxSlots || slots > maxSlots) {
+            throw new IllegalArgumentException("Too many expected URLs: " + expectedUrls);
+        }
+        return (int) slots;
+    }
+
+    /**
+     * Creates a set with the table on the heap
+     *
+     * @param expectedUrls expected number of URLs, at most {@code 2^27}
+     * @return created set
+     */
+    public static FingerprintVisitedSet onHeap(long expectedUrls) {
+        int slots = slots(expectedUrls, MAX_SLOTS);
+        AtomicLongArray array = new AtomicLongArray(slots);
+        return new FingerprintVisitedSet(slots, new Table() {
+            @Override
+            public long get(int index) {
+                return array.get(index);
+            }
+
+            @Override
+            public boolean compareAndSet(int index, long expected, long value) {
+                return array.compareAndSet(index, expected, value);
+            }
+        });
+    }
+
+    /**
+     * Creates a set with the table in a direct buffer, outside the heap
+     *
+     * @param expectedUrls expected number of URLs, at most {@code 2^26}
+     * @return created set
+     */
+    public static FingerprintVisitedSet offHeap(long expectedUrls) {
+        int slots = slots(expectedUrls, MAX_BUFFER_SLOTS);
+        return new FingerprintVisitedSet(slots, bufferTable(ByteBuffer.allocateDirect(slots * Long.BYTES), null));
+    }
+
+    /**
+     * Creates a set with the table in a memory-mapped file, so it is paged out by the OS rather than
+     * occupying memory. The file is overwritten, and deleted on {@link #close()}.
+     *
+     * @param expectedUrls expected number of URLs, at most {@code 2^26}
+     * @param file         scratch file for the table
+     * @return created set
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static FingerprintVisitedSet mapped(long expectedUrls, Path file) throws IOException {
+        int slots = slots(expectedUrls, MAX_BUFFER_SLOTS);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * Long.BYTES);
+        }
+        return new FingerprintVisitedSet(slots, bufferTable(buffer, file));
+    }
+
+    private static Table bufferTable(ByteBuffer buffer, Path file) {
+        return new Table() {
+            @Override
+            public long get(int index) {
+                return (long) BUFFER_LONGS.getVolatile(buffer, index * Long.BYTES);
+            }
+
+            @Override
+            public boolean compareAndSet(int index, long expected, long value) {
+                return BUFFER_LONGS.compareAndSet(buffer, index * Long.BYTES, expected, value);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        };
+    }
+
+    /**
+     * Computes a non-zero 56-bit fingerprint of the URL: 64-bit FNV-1a of its chars with a final avalanche
+     */
+    private static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash = (hash ^ (hash >>> 33)) >>> DEPTH_BITS;
+        return hash == 0 ? 1 : hash;
+    }
+
+    @Override
+    public int raise(String url, int depth) {
+        if (depth <= 0 || depth > getMaxDepth()) {
+            throw new IllegalArgumentException("Unsupported depth: " + depth);
+        }
+
+        long fingerprint = fingerprint(url);
+        long claimed = fingerprint << DEPTH_BITS | depth;
+        int index = (int) fingerprint & mask;
+        for (int probes = 0; probes <= mask; ) {
+            long slot = table.get(index);
+            if (slot == 0) {
+                if (table.compareAndSet(index, 0, claimed)) {
+                    return 0;
+                }
+                // Lost the race for the empty slot, re-read it
+            } else if (slot >>> DEPTH_BITS == fingerprint) {
+                int previous = (int) (slot & DEPTH_MASK);
+                if (previous >= depth || table.compareAndSet(index, slot, claimed)) {
+                    return previous;
+                }
+            } else {
+                index = (index + 1) & mask;
+                probes++;
+            }
+        }
+        throw new IllegalStateException("Visited set is full");
+    }
+
+    @Override
+    public int get(String url) {
+        long fingerprint = fingerprint(url);
+        int index = (int) fingerprint & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long slot = table.get(index);
+            if (slot == 0) {
+                return 0;
+            }
+            if (slot >>> DEPTH_BITS == fingerprint) {
+                return (int) (slot & DEPTH_MASK);
+            }
+            index = (index + 1) & mask;
+        }
+        return 0;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) DEPTH_MASK;
+    }
+
+    @Override
+    public void close() {
+        try {
+            table.close();
+        } catch (IOException e) {
+            System.err.format("Unable to delete visited set file: %s%n", e.getMessage());
+        }
+    }
+}
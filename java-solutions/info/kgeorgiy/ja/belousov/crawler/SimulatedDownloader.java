@@ -0,0 +1,146 @@
+package info.kgeorgiy.ja.belousov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a real downloader, serving a synthetic web with configurable latency.
+ * The web consists of {@code pages} pages {@code http://host<H>.local/page<P>}, spread over {@code hosts} hosts,
+ * each page links to {@code linksPerPage} other pages. Links and failures are deterministic functions of the page,
+ * so results of different runs are comparable. Downloads are scheduled by a timer without occupying any thread
+ * while waiting, so any number of them may be in flight, and are completed on the given executor.
+ */
+public class SimulatedDownloader implements AsyncDownloader {
+    private static final String HOST_PREFIX = "http://host";
+    private static final String PAGE_PREFIX = ".local/page";
+
+    private final int hosts;
+    private final int pages;
+    private final int linksPerPage;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+    private final Executor executor;
+
+    /**
+     * Creates a downloader of the synthetic web, completing downloads on the default asynchronous executor
+     * of {@link CompletableFuture}
+     *
+     * @param hosts         number of hosts
+     * @param pages         number of pages
+     * @param linksPerPage  number of links on each page
+     * @param latencyMillis minimal download latency
+     * @param jitterMillis  maximal random addition to the latency
+     * @param failureRate   fraction of pages which fail to download, from {@code 0} to {@code 1}
+     */
+    public SimulatedDownloader(int hosts, int pages, int linksPerPage, long latencyMillis, long jitterMillis,
+                               double failureRate) {
+        this(hosts, pages, linksPerPage, latencyMillis, jitterMillis, failureRate,
+                new CompletableFuture<Void>().defaultExecutor());
+    }
+
+    /**
+     * Creates a downloader of the synthetic web
+     *
+     * @param hosts         number of hosts
+     * @param pages         number of pages
+     * @param linksPerPage  number of links on each page
+     * @param latencyMillis minimal download latency
+     * @param jitterMillis  maximal random addition to the latency
+     * @param failureRate   fraction of pages which fail to download, from {@code 0} to {@code 1}
+     * @param executor      executor running the completions of downloads, and so their dependent actions
+     */
+    public SimulatedDownloader(int hosts, int pages, int linksPerPage, long latencyMillis, long jitterMillis,
+                               double failureRate, Executor executor) {
+        if (hosts <= 0 || pages <= 0 || linksPerPage < 0 || latencyMillis < 0 || jitterMillis < 0
+                || !(failureRate >= 0 && failureRate <= 1)) {
+            throw new IllegalArgumentException("Incorrect simulated web parameters");
+        }
+        this.hosts = hosts;
+        this.pages = pages;
+        this.linksPerPage = linksPerPage;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Returns link to the page of the synthetic web
+     *
+     * @param page page number
+     * @return link to the page
+     */
+    public String getUrl(int page) {
+        return HOST_PREFIX + page % hosts + PAGE_PREFIX + page;
+    }
+
+    private int parsePage(String url) {
+        int separator = url.indexOf(PAGE_PREFIX);
+        if (!url.startsWith(HOST_PREFIX) || separator < 0) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(url.substring(separator + PAGE_PREFIX.length()));
+            return page >= 0 && page < pages && url.equals(getUrl(page)) ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Checks whether the page fails to download
+     *
+     * @param page page number
+     * @return {@code true} if the download of the page completes exceptionally
+     */
+    public boolean isFailing(int page) {
+        return (mix(page) >>> 11) * 0x1.0p-53 < failureRate;
+    }
+
+    /**
+     * Returns links of the page
+     *
+     * @param page page number
+     * @return links in the page order
+     */
+    public List<String> getLinks(int page) {
+        List<String> links = new ArrayList<>(linksPerPage);
+        for (int i = 0; i < linksPerPage; i++) {
+            links.add(getUrl((int) Long.remainderUnsigned(mix(page * 31L + i), pages)));
+        }
+        return links;
+    }
+
+    @Override
+    public CompletableFuture<Document> download(String url) {
+        CompletableFuture<Document> future = new CompletableFuture<>();
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            int page = parsePage(url);
+            if (page < 0) {
+                future.completeExceptionally(new IOException("Not found: " + url));
+            } else if (isFailing(page)) {
+                future.completeExceptionally(new IOException("Simulated failure: " + url));
+            } else {
+                List<String> links = getLinks(page);
+                future.complete(() -> links);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,40 @@
+package info.kgeorgiy.ja.belousov.crawler;
+
+/**
+ * Set of the URLs visited by a single crawl, remembering the maximal remaining depth each URL was reached with.
+ * Implementations must be thread-safe, and the lookup of an already visited URL should not block.
+ */
+public interface VisitedSet extends AutoCloseable {
+    /**
+     * Atomically raises the remembered depth of the URL to {@code depth}, if it is less
+     *
+     * @param url   visited URL
+     * @param depth positive remaining depth
+     * @return previously remembered depth, or {@code 0} if the URL was not visited
+     */
+    int raise(String url, int depth);
+
+    /**
+     * Returns the remembered depth of the URL
+     *
+     * @param url URL to check
+     * @return remembered depth, or {@code 0} if the URL was not visited
+     */
+    int get(String url);
+
+    /**
+     * Returns the maximal depth this set can remember
+     *
+     * @return maximal supported depth
+     */
+    default int getMaxDepth() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Releases resources of the set
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -3,21 +3,86 @@ package info.kgeorgiy.ja.belousov.crawler;
 import info.kgeorgiy.java.advanced.crawler.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
- * Concurrent web crawler implementation, according to Crawler interface
+ * Concurrent web crawler implementation, according to Crawler interface.
+ * Works either with a blocking {@link Downloader} on a fixed downloader thread pool,
+ * or with an {@link AsyncDownloader} without any downloader threads.
  */
 public class WebCrawler implements Crawler {
-    final Downloader downloader;
+    final AsyncDownloader downloader;
 
     final ExecutorService downloaderPool;
     final ExecutorService extractorPool;
 
+    final int perHost;
+    final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+    private volatile Supplier<? extends VisitedSet> visitedSetFactory = ConcurrentVisitedSet::new;
+
+    /**
+     * Download queue of a single host.
+     * At most {@code perHost} downloads of the host are started at once, the rest wait here in FIFO order.
+     * So a slow host occupies at most {@code perHost} downloader threads,
+     * and the downloader pool queue is shared fairly between the hosts.
+     */
+    private final class HostQueue {
+        private final Queue<Supplier<CompletableFuture<?>>> pending = new ArrayDeque<>();
+        private int active = 0;
+
+        void submit(Supplier<CompletableFuture<?>> download) {
+            synchronized (this) {
+                if (active >= perHost) {
+                    pending.add(download);
+                    return;
+                }
+                active++;
+            }
+            start(download);
+        }
+
+        /**
+         * Starts the download and the ones queued after it.
+         * Downloads which complete before their callback is registered (cached, failed or rejected ones)
+         * are drained in a loop here, rather than recursively from the callback.
+         */
+        private void start(Supplier<CompletableFuture<?>> download) {
+            while (download != null) {
+                AtomicBoolean registering = new AtomicBoolean(true);
+                download.get().whenComplete((result, e) -> {
+                    if (!registering.compareAndSet(true, false)) {
+                        start(next());
+                    }
+                });
+                if (registering.compareAndSet(true, false)) {
+                    return;
+                }
+                download = next();
+            }
+        }
+
+        /**
+         * Takes the next queued download, or releases the slot if there are none
+         */
+        private synchronized Supplier<CompletableFuture<?>> next() {
+            Supplier<CompletableFuture<?>> next = pending.poll();
+            if (next == null) {
+                active--;
+            }
+            return next;
+        }
+    }
 
     /**
      * Basic constructor of web crawler
@@ -25,11 +90,83 @@ public class WebCrawler implements Crawler {
      * @param downloader  Downloader implementation that will be used to download all links found
      * @param downloaders maximum number of concurrent downloads
      * @param extractors  maximum number of concurrent html parsers for link extraction
-     * @param perHost     reserved
+     * @param perHost     maximum number of concurrent downloads from a single host
      */
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
+        this(downloader, downloaders, extractors, perHost, false);
+    }
+
+    /**
+     * Constructor of web crawler that may run downloads on virtual threads.
+     * In the virtual threads mode every download gets its own virtual thread, and the number of concurrent
+     * downloads is limited by a semaphore instead of the pool size, so it may be raised to tens of thousands
+     * without the memory cost of platform thread stacks. Extraction runs on a pool of platform threads anyway.
+     * The virtual threads mode requires JDK 21 or later.
+     *
+     * @param downloader     Downloader implementation that will be used to download all links found
+     * @param downloaders    maximum number of concurrent downloads
+     * @param extractors     maximum number of concurrent html parsers for link extraction
+     * @param perHost        maximum number of concurrent downloads from a single host
+     * @param virtualThreads whether to run downloads on virtual threads
+     * @throws UnsupportedOperationException if virtual threads are requested but not supported by the JVM
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost, boolean virtualThreads) {
+        this.perHost = perHost;
+        if (virtualThreads) {
+            downloaderPool = newVirtualThreadPerTaskExecutor();
+            this.downloader = AsyncDownloader.of(limited(downloader, downloaders), downloaderPool);
+        } else {
+            downloaderPool = Executors.newFixedThreadPool(downloaders);
+            this.downloader = AsyncDownloader.of(downloader, downloaderPool);
+        }
+        extractorPool = Executors.newFixedThreadPool(extractors);
+    }
+
+    /**
+     * Creates {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively, so the crawler still compiles
+     * and runs on JDK 17 when virtual threads are not requested
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    /**
+     * Limits the number of concurrent downloads, waiting threads block on a semaphore
+     */
+    private static Downloader limited(Downloader downloader, int downloaders) {
+        Semaphore permits = new Semaphore(downloaders);
+        return url -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a download slot");
+            }
+            try {
+                return downloader.download(url);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * Constructor of web crawler with a non-blocking downloader.
+     * Downloads are only limited by {@code perHost}, so thousands of them may be in flight
+     * while the only threads of the crawler are the extractors.
+     *
+     * @param downloader AsyncDownloader implementation that will be used to download all links found
+     * @param extractors maximum number of concurrent html parsers for link extraction
+     * @param perHost    maximum number of concurrent downloads from a single host
+     */
+    public WebCrawler(AsyncDownloader downloader, int extractors, int perHost) {
         this.downloader = downloader;
-        downloaderPool = Executors.newFixedThreadPool(downloaders);
+        this.perHost = perHost;
+        downloaderPool = null;
         extractorPool = Executors.newFixedThreadPool(extractors);
     }
 
@@ -42,11 +179,12 @@ public class WebCrawler implements Crawler {
      *             - Depth (int) - crawling depth
      *             - downloads (int) - max number of concurrent downloads
      *             - extractors (int) - max number of concurrent extractors
-     *             - perHost (int) - reserved
+     *             - perHost (int) - max number of concurrent downloads from a single host
+     *             - virtual (boolean) - whether to run downloads on virtual threads
      */
     public static void main(String[] args) {
         if (args == null || args.length < 1) {
-            System.err.println("Usage: java WebCrawler url [depth [downloads [extractors [perHost]]]]");
+            System.err.println("Usage: java WebCrawler url [depth [downloads [extractors [perHost [virtual]]]]]");
             return;
         }
 
@@ -68,9 +206,10 @@ public class WebCrawler implements Crawler {
             if (args.length >= 5) {
                 perHost = Integer.parseInt(args[4]);
             }
+            boolean virtual = args.length >= 6 && Boolean.parseBoolean(args[5]);
 
 
-            try (WebCrawler crawler = new WebCrawler(new CachingDownloader(1.f), downloads, extractors, perHost)) {
+            try (WebCrawler crawler = new WebCrawler(new CachingDownloader(1.f), downloads, extractors, perHost, virtual)) {
                 Result result = crawler.download(url, depth);
                 for (String i : result.getDownloaded()) {
                     System.out.println(i);
@@ -80,6 +219,8 @@ public class WebCrawler implements Crawler {
                 }
             } catch (IOException e) {
                 System.err.format("Downloader initialization error: %s%n", e.getMessage());
+            } catch (UnsupportedOperationException e) {
+                System.err.println(e.getMessage());
             }
         } catch (NumberFormatException e) {
             System.err.println("Incorrect args format!");
@@ -88,77 +229,203 @@ public class WebCrawler implements Crawler {
 
     @Override
     public Result download(String url, int depth) {
-        Set<String> downloads = ConcurrentHashMap.newKeySet();
-        ConcurrentMap<String, IOException> errors = new ConcurrentHashMap<>();
-
-        Phaser countDown = new Phaser(1);
-
-        List<Phaser> synchronizer = new ArrayList<>(depth + 1);
-        for (int i = 0; i <= depth; i++) {
-            synchronizer.add(new Phaser(0));
+        if (depth <= 0) {
+            return new Result(new ArrayList<>(), new ConcurrentHashMap<>());
         }
+        try (VisitedSet visited = visitedSetFactory.get()) {
+            if (depth > visited.getMaxDepth()) {
+                throw new IllegalArgumentException("Depth " + depth + " is not supported by the visited set");
+            }
 
-        downloadImpl(url, depth, countDown, downloads, errors, synchronizer);
-
-        countDown.arriveAndAwaitAdvance();
+            Crawl crawl = new Crawl(visited);
+            crawl.discover(url, depth);
+            crawl.arrive();
+            crawl.finished.join();
 
-        downloads.removeAll(errors.keySet());
+            List<String> downloaded = crawl.downloaded.stream()
+                    .filter(page -> !crawl.errors.containsKey(page))
+                    .toList();
+            return new Result(new ArrayList<>(downloaded), crawl.errors);
+        }
+    }
 
-        return new Result(new ArrayList<>(downloads), errors);
+    /**
+     * Sets the factory of the visited URL sets, a new set is created for every {@link #download(String, int)} call.
+     * By default, URLs are stored exactly in a {@link ConcurrentVisitedSet}. A {@link FingerprintVisitedSet}
+     * takes much less memory for very large crawls, but it is not exact: a URL whose fingerprint collides
+     * with an already visited one is silently skipped, with probability about {@code n^2 / 2^57} for
+     * {@code n} URLs.
+     * Apart from the result, the visited set is the only state the crawler keeps for a URL
+     * once it has been downloaded and its links were handed out.
+     *
+     * @param factory visited set factory
+     */
+    public void setVisitedSetFactory(Supplier<? extends VisitedSet> factory) {
+        visitedSetFactory = factory;
     }
 
     @Override
     public void close() {
-        downloaderPool.shutdownNow();
+        if (downloaderPool != null) {
+            downloaderPool.shutdownNow();
+        }
         extractorPool.shutdownNow();
     }
 
     /**
-     * Implementation that submits the given download task to the available thread pool.
-     *
-     * @param url          link to download from
-     * @param depth        maximum depth for crawling
-     * @param countDown    used to count remaining pages to download, must indicate the number of active downloads before
-     *                     the method was called (when this method is called for the first download, it must indicate 0)
-     * @param downloads    <em>Thread-safe</em> set of already downloaded links
-     * @param errors       <em>Thread-safe</em> map of erroneous URLs
-     * @param synchronizer List of exactly {@code depth}+1 {@link Phaser} instances for synchronizing bfs layers.
+     * State of a single {@link #download(String, int)} call.
+     * There is no barrier between the BFS layers: every page is downloaded and extracted as soon as possible.
+     * Instead, the visited set remembers the maximal remaining depth each page was reached with.
+     * If a page is reached by a shorter path while its links are being propagated, they are propagated again
+     * with the greater depth, so the result is the same as of the layer-by-layer BFS.
+     * Nothing is kept of a page once its links are handed out: if it is reached by a shorter path after that,
+     * it is downloaded again.
      */
-    private void downloadImpl(String url, int depth, Phaser countDown, Set<String> downloads,
-                              ConcurrentMap<String, IOException> errors, List<Phaser> synchronizer) {
-        if (downloads.add(url)) {
-            countDown.register();
-            synchronizer.get(depth - 1).register();
-            downloaderPool.submit(() -> {
-                try {
-                    Document document = downloader.download(url);
+    private final class Crawl {
+        final VisitedSet visited;
+        /**
+         * URLs being downloaded or extracted, updates of an URL are atomic with raising its depth
+         */
+        final ConcurrentMap<String, Boolean> inFlight = new ConcurrentHashMap<>();
+        final Queue<String> downloaded = new ConcurrentLinkedQueue<>();
+        final ConcurrentMap<String, IOException> errors = new ConcurrentHashMap<>();
+        /**
+         * Counts scheduled downloads and extractions, the caller is counted as well
+         */
+        final AtomicInteger pending = new AtomicInteger(1);
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        Crawl(VisitedSet visited) {
+            this.visited = visited;
+        }
+
+        void register() {
+            pending.incrementAndGet();
+        }
+
+        void arrive() {
+            if (pending.decrementAndGet() == 0) {
+                finished.complete(null);
+            }
+        }
+
+        /**
+         * Reaches the page with the given remaining depth: schedules its download if it is new,
+         * or if the depth has increased after its links were handed out
+         *
+         * @param url   link to the page
+         * @param depth remaining depth, including the page itself
+         */
+        void discover(String url, int depth) {
+            // Most links lead to visited pages, they are filtered by the lock-free lookup
+            if (visited.get(url) >= depth) {
+                return;
+            }
+
+            // Previous depth of the URL, if it has to be downloaded
+            int[] download = {-1};
+            inFlight.compute(url, (u, flight) -> {
+                int previous = visited.raise(u, depth);
+                if (flight == null && depth > previous && (previous == 0 || !errors.containsKey(u))) {
+                    download[0] = previous;
+                    return Boolean.TRUE;
+                }
+                // Otherwise, an in-flight page sees the new depth before it is released
+                return flight;
+            });
+            if (download[0] >= 0) {
+                scheduleDownload(url, download[0] == 0);
+            }
+        }
 
-                    synchronizer.get(depth).register();
-                    synchronizer.get(depth).arriveAndAwaitAdvance();
-                    synchronizer.get(depth).arriveAndDeregister();
+        /**
+         * Keeps the page in flight if its links have to be propagated with a greater depth, releases it otherwise
+         *
+         * @param url           link to the page
+         * @param expandedDepth depth its links were propagated with, {@code 1} if they were not
+         * @return whether the page is kept
+         */
+        private boolean keep(String url, int expandedDepth) {
+            return inFlight.computeIfPresent(url, (u, flight) -> visited.get(u) > expandedDepth ? flight : null) != null;
+        }
 
+        /**
+         * @param first whether the page was not downloaded before
+         */
+        private void scheduleDownload(String url, boolean first) {
+            String host;
+            try {
+                host = URLUtils.getHost(url);
+            } catch (MalformedURLException e) {
+                errors.put(url, e);
+                inFlight.remove(url);
+                return;
+            }
 
-                    extractorPool.submit(() -> {
+            register();
+            hosts.computeIfAbsent(host, h -> new HostQueue()).submit(() -> startDownload(url)
+                    .whenComplete((document, e) -> {
                         try {
-                            if (depth > 1) {
-                                List<String> links = document.extractLinks();
-                                for (String link : links) {
-                                    downloadImpl(link, depth - 1, countDown, downloads, errors, synchronizer);
+                            if (e != null) {
+                                errors.put(url, asIOException(e));
+                                inFlight.remove(url);
+                            } else {
+                                if (first) {
+                                    downloaded.add(url);
+                                }
+                                if (keep(url, 1)) {
+                                    scheduleExtraction(url, document);
                                 }
                             }
-                        } catch (IOException e) {
-                            errors.put(url, e);
                         } finally {
-                            countDown.arriveAndDeregister();
-                            synchronizer.get(depth - 1).arriveAndDeregister();
+                            arrive();
                         }
-                    });
-                } catch (IOException e) {
-                    errors.put(url, e);
-                    countDown.arriveAndDeregister();
-                    synchronizer.get(depth - 1).arriveAndDeregister();
+                    }));
+        }
+
+        private CompletableFuture<Document> startDownload(String url) {
+            try {
+                return downloader.download(url);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private static IOException asIOException(Throwable e) {
+            if (e instanceof CompletionException && e.getCause() != null) {
+                e = e.getCause();
+            }
+            return e instanceof IOException ioException ? ioException : new IOException(e);
+        }
+
+        private void scheduleExtraction(String url, Document document) {
+            register();
+            extractorPool.submit(() -> {
+                try {
+                    extract(url, document);
+                } finally {
+                    arrive();
                 }
             });
         }
+
+        private void extract(String url, Document document) {
+            List<String> links;
+            try {
+                links = document.extractLinks();
+            } catch (IOException e) {
+                errors.put(url, e);
+                inFlight.remove(url);
+                return;
+            }
+
+            int expandedDepth;
+            do {
+                expandedDepth = visited.get(url);
+                for (String link : links) {
+                    discover(link, expandedDepth - 1);
+                }
+            } while (keep(url, expandedDepth));
+        }
     }
 }
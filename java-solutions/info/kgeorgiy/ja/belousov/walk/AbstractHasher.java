@@ -1,49 +1,169 @@
 package info.kgeorgiy.ja.belousov.walk;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.security.MessageDigest;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
 
 public abstract class AbstractHasher {
-    final protected MessageDigest hasher;
+    private static final long MAPPING_THRESHOLD = 4L << 20;
+    private static final long MAPPING_WINDOW = 1L << 30;
+    private static final HexFormat HEX = HexFormat.of();
+
     private Path file;
-    private final byte[] buffer;
+    private ByteBuffer buffer;
+    private WalkMetrics metrics;
 
-    protected AbstractHasher(MessageDigest hasher) {
-        this.hasher = hasher;
-        this.buffer = new byte[getBlockSize()];
+    public String compute() throws IOException {
+        return format(computeDigest());
     }
 
-    public String compute() throws IOException {
-        try (BufferedInputStream file = new BufferedInputStream(Files.newInputStream(this.file))) {
-            int bytesRead;
-            while ((bytesRead = file.read(buffer)) > 0) {
-                hasher.update(buffer, 0, bytesRead);
+    public byte[] computeDigest() throws IOException {
+        if (metrics != null) {
+            return computeDigestTimed();
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= getMappingThreshold()) {
+                computeMapped(channel, size);
+            } else {
+                computeBuffered(channel);
             }
         }
+        return digest();
+    }
 
-        byte[] digest = hasher.digest();
-        StringBuilder result = new StringBuilder(hasher.getDigestLength() * 2);
-        for (byte i : digest) {
-            result.append(String.format("%02x", i));
+    private byte[] computeDigestTimed() throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            metrics.recordOpen(System.nanoTime() - start);
+
+            long size = channel.size();
+            if (size >= getMappingThreshold()) {
+                start = System.nanoTime();
+                computeMapped(channel, size);
+                metrics.recordRead(size, 0);
+                metrics.recordDigest(System.nanoTime() - start);
+            } else {
+                computeBufferedTimed(channel);
+            }
+        }
+
+        start = System.nanoTime();
+        byte[] digest = digest();
+        metrics.recordDigest(System.nanoTime() - start);
+        return digest;
+    }
+
+    private void computeMapped(FileChannel channel, long size) throws IOException {
+        for (long position = 0; position < size; position += MAPPING_WINDOW) {
+            update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW, size - position)));
         }
-        return result.toString();
     }
 
+    private void computeBuffered(FileChannel channel) throws IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(getBlockSize());
+        }
+
+        // Size may be unknown or stale (procfs, growing files), so read until EOF rather than up to size
+        while (channel.read(buffer.clear()) >= 0) {
+            update(buffer.flip());
+        }
+    }
+
+    private void computeBufferedTimed(FileChannel channel) throws IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(getBlockSize());
+        }
+
+        while (true) {
+            long start = System.nanoTime();
+            int read = channel.read(buffer.clear());
+            long readEnd = System.nanoTime();
+            metrics.recordRead(Math.max(read, 0), readEnd - start);
+            if (read < 0) {
+                break;
+            }
+
+            update(buffer.flip());
+            metrics.recordDigest(System.nanoTime() - readEnd);
+        }
+    }
+
+    /**
+     * Consumes all remaining bytes of {@code data}
+     */
+    protected abstract void update(ByteBuffer data);
+
+    /**
+     * Completes the computation. The hasher is reset afterwards.
+     *
+     * @return digest of all the data passed since the last reset
+     */
+    protected abstract byte[] digest() throws IOException;
+
+    protected abstract void reset();
+
+    public abstract String getName();
+
     protected abstract int getBlockSize();
 
-    protected int getDigestSize() {
-        return hasher.getDigestLength();
+    /**
+     * Files of at least this size are memory-mapped instead of being read through the direct buffer
+     */
+    protected long getMappingThreshold() {
+        return MAPPING_THRESHOLD;
+    }
+
+    protected abstract int getDigestSize();
+
+    /**
+     * Sizes of the digest parts that are printed as separate columns, summing up to {@link #getDigestSize()}
+     */
+    protected int[] getColumns() {
+        return new int[]{getDigestSize()};
+    }
+
+    public String format(byte[] digest) {
+        StringBuilder result = new StringBuilder(digest.length * 2 + getColumns().length);
+        int offset = 0;
+        for (int column : getColumns()) {
+            if (offset > 0) {
+                result.append(' ');
+            }
+            HEX.formatHex(result, digest, offset, offset + column);
+            offset += column;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Takes the chunk records of the last computed digest, to be written after the digest itself
+     *
+     * @return records, or {@code null} if the hasher does not split files into chunks
+     */
+    ChunkingContext.PendingRecord takePendingRecord() {
+        return null;
+    }
+
+    void setMetrics(WalkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    protected Path getFile() {
+        return file;
     }
 
     public void setFile(Path file) {
         this.file = file;
-        this.hasher.reset();
+        reset();
     }
 
     public String getEmptyHash() {
-        return "0".repeat(getDigestSize() * 2);
+        return format(new byte[getDigestSize()]);
     }
 }
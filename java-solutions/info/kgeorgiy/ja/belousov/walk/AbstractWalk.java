@@ -1,20 +1,84 @@
 package info.kgeorgiy.ja.belousov.walk;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class AbstractWalk {
-    private static void writeResult(Writer output, String hash, String filePath) throws IOException {
-        output.write(hash);
-        output.write(' ');
-        output.write(filePath);
-        output.write(System.lineSeparator());
+    protected static void mainImpl(String name, String[] args, boolean recursive,
+                                   Function<WalkOptions, IOFunction<Path, Stream<Path>>> walkerFactory) {
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args, recursive);
+        } catch (IllegalArgumentException e) {
+            System.err.format("Incorrect args: %s%n", e.getMessage());
+            System.err.format("Usage: java %s %s%n", name, recursive ? WalkOptions.RECURSIVE_USAGE : WalkOptions.USAGE);
+            return;
+        }
+
+        HasherFactory factory = Hashers.get(options.getHashes());
+        IOFunction<Path, Stream<Path>> walker = walkerFactory.apply(options);
+        try (ChunkingContext chunking = options.getChunkManifest() == null ? null
+                : new ChunkingContext(options.getChunkManifest(), Runtime.getRuntime().availableProcessors())) {
+            solve(options, chunking == null ? factory : chunking.wrap(factory), walker);
+        } catch (NoSuchAlgorithmException e) {
+            System.err.format("Hash algorithm is not supported: %s%n", e.getMessage());
+        } catch (IOException e) {
+            System.err.print("Unable to write to chunk manifest file: ");
+            System.err.println(e.getMessage());
+        } finally {
+            if (walker instanceof ParallelTreeWalker parallelWalker) {
+                parallelWalker.close();
+            }
+        }
     }
 
     public static void solve(String in, String out, AbstractHasher hasher, IOFunction<Path, Stream<Path>> walker) {
+        solveImpl(new WalkOptions(in, out), hasher, () -> hasher, null, walker);
+    }
+
+    public static void solve(String in, String out, HasherFactory factory, int threads,
+                             IOFunction<Path, Stream<Path>> walker) throws NoSuchAlgorithmException {
+        WalkOptions options = new WalkOptions(in, out);
+        options.setThreads(threads);
+        solve(options, factory, walker);
+    }
+
+    public static void solve(WalkOptions options, HasherFactory factory,
+                             IOFunction<Path, Stream<Path>> walker) throws NoSuchAlgorithmException {
+        if (!options.isMetrics()) {
+            solveImpl(options, factory.create(), factory, null, walker);
+            return;
+        }
+
+        try (WalkMetrics metrics = new WalkMetrics()) {
+            metrics.register();
+            if (options.getProgressPeriod() > 0) {
+                metrics.startReporting(options.getProgressPeriod());
+            }
+
+            HasherFactory timedFactory = metrics.timed(factory);
+            solveImpl(options, timedFactory.create(), timedFactory, metrics, metrics.timed(walker));
+            metrics.printStatistics();
+        }
+    }
+
+    private static void solveImpl(WalkOptions options, AbstractHasher hasher, HasherFactory factory,
+                                  WalkMetrics metrics, IOFunction<Path, Stream<Path>> walker) {
+        final String in = options.getInput();
+        final String out = options.getOutput();
+
+        HashCache cache = null;
+        if (options.getCacheFile() != null) {
+            cache = new HashCache(options.getCacheFile(), hasher.getName(), hasher.getDigestSize());
+            cache.load();
+        }
+
         try {
             if (in == null) {
                 throw new InvalidPathException("", "Input file is null");
@@ -37,7 +101,11 @@ public class AbstractWalk {
                 }
 
                 try (Stream<String> files = Files.lines(inputFile, StandardCharsets.UTF_8)) {
-                    try (BufferedWriter output = new BufferedWriter(Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8))) {
+                    try (HashWriter output = new HashWriter(FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+                         ResultSink sink = options.isDuplicates()
+                                 ? new DuplicateFinder(hasher, factory, options.getThreads(), metrics, output)
+                                 : new HashPipeline(hasher, factory, options.getThreads(), cache, metrics, output)) {
                         Iterator<String> filesIter = files.iterator();
 
                         while (filesIter.hasNext()) {
@@ -52,29 +120,24 @@ public class AbstractWalk {
                                     }
 
                                     while (requestedFilesIterator.hasNext()) {
-                                        Path file = requestedFilesIterator.next();
-                                        if (!Files.isRegularFile(file)) continue;
-
-                                        String result = hasher.getEmptyHash();
-                                        try {
-                                            hasher.setFile(file);
-                                            result = hasher.compute();
-                                        } catch (IOException e) {
-                                            System.err.print("Error reading from file: ");
-                                            System.err.println(e.getMessage());
-                                        }
-                                        writeResult(output, result, file.toString());
+                                        sink.submit(requestedFilesIterator.next());
                                     }
                                 }
                             } catch (InvalidPathException | IOException e) {
                                 System.err.print("Could not access the requested file: ");
                                 System.err.println(e.getMessage());
-                                writeResult(output, hasher.getEmptyHash(), fileString);
+                                if (metrics != null) {
+                                    metrics.recordError(WalkMetrics.Error.ROOT_ACCESS);
+                                }
+                                sink.submitEmpty(fileString);
                             }
                         }
                     } catch (IOException e) {
                         System.err.print("Unable to write to output file: ");
                         System.err.println(e.getMessage());
+                        if (metrics != null) {
+                            metrics.recordError(WalkMetrics.Error.OUTPUT);
+                        }
                     } catch (SecurityException e) {
                         System.err.print("Security violation writing to output file: ");
                         System.err.println(e.getMessage());
@@ -98,5 +161,9 @@ public class AbstractWalk {
             System.err.println(e.getMessage());
         }
 
+        if (cache != null) {
+            cache.save();
+            cache.printStatistics();
+        }
     }
 }
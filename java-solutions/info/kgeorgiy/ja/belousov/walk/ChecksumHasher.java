@@ -0,0 +1,50 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Adapter of 32-bit {@link Checksum} implementations such as {@link java.util.zip.CRC32C}.
+ * Digest is the checksum value in big-endian byte order.
+ */
+public class ChecksumHasher extends AbstractHasher {
+    private final String name;
+    private final Checksum checksum;
+
+    public ChecksumHasher(String name, Checksum checksum) {
+        this.name = name;
+        this.checksum = checksum;
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        checksum.update(data);
+    }
+
+    @Override
+    protected byte[] digest() {
+        int value = (int) checksum.getValue();
+        checksum.reset();
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    @Override
+    protected void reset() {
+        checksum.reset();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected int getBlockSize() {
+        return 1 << 16;
+    }
+
+    @Override
+    protected int getDigestSize() {
+        return Integer.BYTES;
+    }
+}
@@ -0,0 +1,68 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Resources shared by all {@link ChunkingHasher} instances of a walk: the pool hashing chunks
+ * and the manifest listing digests of every chunk.
+ */
+public class ChunkingContext implements AutoCloseable {
+    /**
+     * Chunk records of a hashed file, written to the manifest along with the file result,
+     * so that the manifest follows the order of the results
+     */
+    @FunctionalInterface
+    interface PendingRecord {
+        void write() throws IOException;
+    }
+
+    private final ExecutorService pool;
+    private final int parallelism;
+    private final HashWriter manifest;
+
+    public ChunkingContext(Path manifestFile, int parallelism) throws IOException {
+        this.manifest = new HashWriter(FileChannel.open(manifestFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        this.parallelism = parallelism;
+        this.pool = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * @param chunkHasherFactory hashers used for chunks and for the Merkle tree nodes
+     * @return factory of {@link ChunkingHasher} bound to this context
+     */
+    public HasherFactory wrap(HasherFactory chunkHasherFactory) {
+        return () -> new ChunkingHasher(this, chunkHasherFactory);
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    synchronized void record(Path file, List<Integer> lengths, List<byte[]> digests, int[] columns) throws IOException {
+        String filePath = file.toString();
+        long offset = 0;
+        for (int i = 0; i < digests.size(); i++) {
+            manifest.write(digests.get(i), columns, offset, lengths.get(i), filePath);
+            offset += lengths.get(i);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        manifest.close();
+    }
+}
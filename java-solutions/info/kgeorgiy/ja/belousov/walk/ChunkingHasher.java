@@ -0,0 +1,201 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the file into content-defined chunks using the Gear rolling hash and hashes them in parallel.
+ * <p>
+ * Digest is the root of the Merkle tree built over the chunk digests, where an inner node is the hash of
+ * {@code 0x01 || left || right} and an unpaired node is promoted to the next level as is. A file consisting
+ * of a single chunk thus has the same digest as with the inner hasher alone. Digest of every chunk
+ * is recorded to the manifest of the {@link ChunkingContext} when the file result is written.
+ */
+public class ChunkingHasher extends AbstractHasher {
+    private static final int MIN_CHUNK = 256 << 10;
+    private static final int MAX_CHUNK = 4 << 20;
+    private static final int INITIAL_CHUNK_BUFFER = 1 << 16;
+    // 20 bits give chunks of about 1 MiB above the minimum. High bits are used,
+    // since with the Gear hash they depend on the last 64 bytes rather than on the last few.
+    private static final long BOUNDARY_MASK = ((1L << 20) - 1) << 44;
+    private static final byte[] NODE_PREFIX = {1};
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // SplitMix64 with a fixed seed, so chunk boundaries are stable between runs
+        long state = 0x6A09E667F3BCC908L;
+        for (int i = 0; i < GEAR.length; i++) {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final ChunkingContext context;
+    private final AbstractHasher merkle;
+    private final ThreadLocal<AbstractHasher> chunkHashers;
+    private final int maxInFlight;
+
+    private final List<Future<byte[]>> chunks = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private int awaited;
+    private ChunkingContext.PendingRecord pendingRecord;
+    private ByteBuffer current = ByteBuffer.allocate(INITIAL_CHUNK_BUFFER);
+    private long rolling;
+
+    public ChunkingHasher(ChunkingContext context, HasherFactory chunkHasherFactory) throws NoSuchAlgorithmException {
+        this.context = context;
+        this.merkle = chunkHasherFactory.create();
+        this.maxInFlight = 2 * context.getParallelism();
+        this.chunkHashers = chunkHasherFactory.perThread();
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            int start = data.position();
+            int limit = data.limit();
+
+            // No boundary can occur before the minimum chunk size, so these bytes are not even rolled
+            int cut = -1;
+            for (int i = start + Math.max(0, MIN_CHUNK - current.position()); i < limit; i++) {
+                rolling = (rolling << 1) + GEAR[data.get(i) & 0xFF];
+                if ((rolling & BOUNDARY_MASK) == 0 || current.position() + i - start + 1 >= MAX_CHUNK) {
+                    cut = i + 1;
+                    break;
+                }
+            }
+
+            int end = cut < 0 ? limit : cut;
+            append(data, start, end - start);
+            if (cut >= 0) {
+                submitChunk();
+            }
+        }
+    }
+
+    private void append(ByteBuffer data, int start, int length) {
+        if (current.remaining() < length) {
+            int capacity = current.capacity();
+            while (capacity - current.position() < length) {
+                capacity *= 2;
+            }
+            current = ByteBuffer.allocate(Math.min(capacity, MAX_CHUNK)).put(current.flip());
+        }
+        current.put(data.slice(start, length));
+        data.position(start + length);
+    }
+
+    private void submitChunk() {
+        ByteBuffer chunk = current.flip();
+        current = ByteBuffer.allocate(INITIAL_CHUNK_BUFFER);
+        rolling = 0;
+
+        lengths.add(chunk.remaining());
+        chunks.add(context.submit(() -> {
+            AbstractHasher hasher = chunkHashers.get();
+            hasher.reset();
+            hasher.update(chunk);
+            return hasher.digest();
+        }));
+
+        // Bounds memory held by the chunks waiting to be hashed
+        if (chunks.size() - awaited > maxInFlight) {
+            try {
+                chunks.get(awaited++).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+                // Reported by digest()
+            }
+        }
+    }
+
+    @Override
+    protected byte[] digest() throws IOException {
+        if (current.position() > 0 || chunks.isEmpty()) {
+            submitChunk();
+        }
+
+        try {
+            List<byte[]> digests = new ArrayList<>(chunks.size());
+            for (Future<byte[]> chunk : chunks) {
+                digests.add(chunk.get());
+            }
+            Path file = getFile();
+            List<Integer> chunkLengths = List.copyOf(lengths);
+            pendingRecord = () -> context.record(file, chunkLengths, digests, getColumns());
+            return merkleRoot(digests);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing chunks of " + getFile());
+        } catch (ExecutionException e) {
+            throw new IOException("Error hashing chunk: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            reset();
+        }
+    }
+
+    private byte[] merkleRoot(List<byte[]> level) throws IOException {
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                merkle.reset();
+                merkle.update(ByteBuffer.wrap(NODE_PREFIX));
+                merkle.update(ByteBuffer.wrap(level.get(i)));
+                merkle.update(ByteBuffer.wrap(level.get(i + 1)));
+                next.add(merkle.digest());
+            }
+            if (level.size() % 2 == 1) {
+                next.add(level.get(level.size() - 1));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    @Override
+    ChunkingContext.PendingRecord takePendingRecord() {
+        ChunkingContext.PendingRecord record = pendingRecord;
+        pendingRecord = null;
+        return record;
+    }
+
+    @Override
+    protected void reset() {
+        chunks.forEach(chunk -> chunk.cancel(false));
+        chunks.clear();
+        lengths.clear();
+        awaited = 0;
+        current.clear();
+        rolling = 0;
+    }
+
+    @Override
+    public String getName() {
+        return "CDC(" + merkle.getName() + ")";
+    }
+
+    @Override
+    protected int getBlockSize() {
+        return 1 << 16;
+    }
+
+    @Override
+    protected int getDigestSize() {
+        return merkle.getDigestSize();
+    }
+
+    @Override
+    protected int[] getColumns() {
+        return merkle.getColumns();
+    }
+}
@@ -0,0 +1,70 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Computes several digests in one pass over the file. Digest is the concatenation of the inner digests,
+ * each printed as a separate column.
+ */
+public class CompositeHasher extends AbstractHasher {
+    private final List<AbstractHasher> hashers;
+    private final int[] columns;
+    private final int digestSize;
+
+    public CompositeHasher(List<AbstractHasher> hashers) {
+        this.hashers = List.copyOf(hashers);
+        this.columns = this.hashers.stream().flatMapToInt(hasher -> Arrays.stream(hasher.getColumns())).toArray();
+        this.digestSize = this.hashers.stream().mapToInt(AbstractHasher::getDigestSize).sum();
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        int position = data.position();
+        for (AbstractHasher hasher : hashers) {
+            hasher.update(data.position(position));
+        }
+    }
+
+    @Override
+    protected byte[] digest() throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(digestSize);
+        for (AbstractHasher hasher : hashers) {
+            result.put(hasher.digest());
+        }
+        return result.array();
+    }
+
+    @Override
+    protected void reset() {
+        hashers.forEach(AbstractHasher::reset);
+    }
+
+    @Override
+    public String getName() {
+        return hashers.stream().map(AbstractHasher::getName).collect(Collectors.joining("+"));
+    }
+
+    @Override
+    protected int getBlockSize() {
+        return hashers.stream().mapToInt(AbstractHasher::getBlockSize).max().orElse(1 << 16);
+    }
+
+    @Override
+    protected long getMappingThreshold() {
+        return hashers.stream().mapToLong(AbstractHasher::getMappingThreshold).min().orElse(super.getMappingThreshold());
+    }
+
+    @Override
+    protected int getDigestSize() {
+        return digestSize;
+    }
+
+    @Override
+    protected int[] getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,228 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds groups of files with equal contents, reading as little as possible.
+ * <p>
+ * Files are grouped by size first. Files sharing the size are compared by a cheap hash of their first and last
+ * {@value #SAMPLE_SIZE} bytes, and only files that still collide are fully hashed.
+ * Files not larger than that are fully hashed at once, without being read again.
+ * Empty files are ignored, and a file reached more than once (via overlapping roots, hard or symbolic links)
+ * is only counted under the path it was first reached by. Groups are written as {@code <digest> <path>} lines, separated by an empty line.
+ */
+public class DuplicateFinder implements ResultSink {
+    private static final int SAMPLE_SIZE = 1 << 12;
+
+    private final AbstractHasher hasher;
+    private final HashWriter output;
+    private final WalkMetrics metrics;
+    private final ExecutorService workers;
+    private final ThreadLocal<AbstractHasher> fullHashers;
+    private final ThreadLocal<Xxh64Hasher> sampleHashers = ThreadLocal.withInitial(Xxh64Hasher::new);
+    private final ThreadLocal<ByteBuffer> sampleBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SAMPLE_SIZE));
+
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+    private final Set<Object> seen = new HashSet<>();
+    private final LongAdder bytesRead = new LongAdder();
+    private long bytesTotal;
+    private long filesTotal;
+
+    private record Group(long size, ByteBuffer key, List<Path> files) {
+    }
+
+    @FunctionalInterface
+    private interface KeyFunction {
+        byte[] apply(Path file, long size) throws IOException;
+    }
+
+    public DuplicateFinder(AbstractHasher hasher, HasherFactory factory, int threads, WalkMetrics metrics,
+                           HashWriter output) {
+        this.hasher = hasher;
+        this.metrics = metrics;
+        this.output = output;
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.fullHashers = factory.perThread();
+    }
+
+    @Override
+    public void submit(Path file) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return;
+        }
+        if (!attributes.isRegularFile() || attributes.size() == 0) {
+            return;
+        }
+        if (!seen.add(identity(file, attributes))) {
+            return;
+        }
+
+        filesTotal++;
+        bytesTotal += attributes.size();
+        bySize.computeIfAbsent(attributes.size(), size -> new ArrayList<>()).add(file);
+    }
+
+    /**
+     * @return key equal for all paths of the same file
+     */
+    private static Object identity(Path file, BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        if (key != null) {
+            return key;
+        }
+        try {
+            return file.toRealPath();
+        } catch (IOException e) {
+            // Gone since its attributes were read, dedup by the path at least
+            return file.toAbsolutePath().normalize();
+        }
+    }
+
+    @Override
+    public void submitEmpty(String filePath) {
+        // Nothing to compare
+    }
+
+    /**
+     * Hashes the first and last {@value #SAMPLE_SIZE} bytes, or fully hashes files not larger than that,
+     * since they are read whole anyway
+     */
+    private byte[] sample(Path file, long size) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = sampleBuffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(channel, buffer, 0, Math.min(SAMPLE_SIZE, size));
+            if (size <= SAMPLE_SIZE) {
+                AbstractHasher fullHasher = fullHashers.get();
+                fullHasher.setFile(file);
+                fullHasher.reset();
+                fullHasher.update(buffer.flip());
+                byte[] digest = fullHasher.digest();
+                if (metrics != null) {
+                    metrics.recordFile(System.nanoTime() - start);
+                }
+                return digest;
+            }
+
+            Xxh64Hasher sampler = sampleHashers.get();
+            sampler.reset();
+            sampler.update(buffer.flip());
+            long suffix = Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE);
+            readFully(channel, buffer, suffix, size - suffix);
+            sampler.update(buffer.flip());
+            return sampler.digest();
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position, long length) throws IOException {
+        buffer.clear().limit((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File was truncated while reading");
+            }
+        }
+        bytesRead.add(length);
+    }
+
+    private byte[] fullDigest(Path file, long size) throws IOException {
+        long start = System.nanoTime();
+        AbstractHasher fullHasher = fullHashers.get();
+        fullHasher.setFile(file);
+        byte[] digest = fullHasher.computeDigest();
+        bytesRead.add(size);
+        if (metrics != null) {
+            metrics.recordFile(System.nanoTime() - start);
+        }
+        return digest;
+    }
+
+    /**
+     * Splits every group into subgroups of files with equal keys, dropping subgroups of a single file
+     */
+    private List<Group> refine(List<Group> groups, KeyFunction key) throws InterruptedException {
+        List<List<Future<byte[]>>> keys = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            List<Future<byte[]>> groupKeys = new ArrayList<>(group.files().size());
+            for (Path file : group.files()) {
+                groupKeys.add(workers.submit(() -> key.apply(file, group.size())));
+            }
+            keys.add(groupKeys);
+        }
+
+        List<Group> result = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            Group group = groups.get(i);
+            Map<ByteBuffer, List<Path>> subgroups = new LinkedHashMap<>();
+            for (int j = 0; j < group.files().size(); j++) {
+                try {
+                    ByteBuffer fileKey = ByteBuffer.wrap(keys.get(i).get(j).get());
+                    subgroups.computeIfAbsent(fileKey, k -> new ArrayList<>()).add(group.files().get(j));
+                } catch (ExecutionException e) {
+                    System.err.print("Error reading from file: ");
+                    System.err.println(e.getCause().getMessage());
+                    if (metrics != null) {
+                        metrics.recordError(WalkMetrics.Error.FILE_READ);
+                    }
+                }
+            }
+            subgroups.forEach((fileKey, files) -> {
+                if (files.size() > 1) {
+                    result.add(new Group(group.size(), fileKey, files));
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            List<Group> groups = new ArrayList<>();
+            bySize.forEach((size, files) -> {
+                if (files.size() > 1) {
+                    groups.add(new Group(size, null, files));
+                }
+            });
+
+            // Keys of the files not larger than the sample are their full digests already
+            List<Group> duplicates = new ArrayList<>();
+            List<Group> large = new ArrayList<>();
+            for (Group group : refine(groups, this::sample)) {
+                (group.size() <= SAMPLE_SIZE ? duplicates : large).add(group);
+            }
+            duplicates.addAll(refine(large, this::fullDigest));
+            duplicates.sort(Comparator.comparingLong(Group::size).reversed());
+
+            int[] columns = hasher.getColumns();
+            long duplicateFiles = 0;
+            for (Group group : duplicates) {
+                byte[] digest = group.key().array();
+                for (Path file : group.files()) {
+                    output.write(digest, columns, file.toString());
+                }
+                output.writeLineSeparator();
+                duplicateFiles += group.files().size();
+            }
+
+            System.err.format("Duplicates: %d groups of %d files; read %d of %d bytes in %d files%n",
+                    duplicates.size(), duplicateFiles, bytesRead.sum(), bytesTotal, filesTotal);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while looking for duplicates");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent map from file path to its digest, valid while file size, modification time and file key stay the same.
+ * <p>
+ * File format (big endian): magic, algorithm name, digest size, entries count, then for every entry:
+ * path, size, modification time in nanoseconds, file key and the raw digest.
+ * Strings are stored as an int length followed by UTF-8 bytes.
+ * <p>
+ * Only entries of the files looked up or hashed during the run are saved,
+ * so entries of deleted or no longer walked files do not accumulate.
+ */
+public class HashCache {
+    private static final int MAGIC = 0x57484331; // "WHC1"
+
+    // Files modified this close to the moment they were hashed may change again within the same
+    // timestamp tick, so their digests are not trusted on the next run
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Path cacheFile;
+    private final String algorithm;
+    private final int digestSize;
+    // Entries of the previous run, moved to entries when their files are looked up
+    private final Map<String, Entry> loaded = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    private int dropped;
+
+    private record Entry(long size, long modified, String fileKey, byte[] digest) {
+        boolean matches(long size, long modified, String fileKey) {
+            return this.size == size && this.modified == modified && this.fileKey.equals(fileKey);
+        }
+    }
+
+    public HashCache(Path cacheFile, String algorithm, int digestSize) {
+        this.cacheFile = cacheFile;
+        this.algorithm = algorithm;
+        this.digestSize = digestSize;
+    }
+
+    public void load() {
+        if (Files.notExists(cacheFile)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || !algorithm.equals(readString(buffer)) || buffer.getInt() != digestSize) {
+                System.err.println("Hash cache was created by another version or algorithm, ignoring it");
+                return;
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                long size = buffer.getLong();
+                long modified = buffer.getLong();
+                String fileKey = readString(buffer);
+                byte[] digest = new byte[digestSize];
+                buffer.get(digest);
+                loaded.put(path, new Entry(size, modified, fileKey, digest));
+            }
+        } catch (IOException e) {
+            System.err.print("Unable to read hash cache: ");
+            System.err.println(e.getMessage());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Hash cache is corrupted, ignoring it");
+            loaded.clear();
+        }
+    }
+
+    public void save() {
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                writeString(output, algorithm);
+                output.writeInt(digestSize);
+                dropped = loaded.size();
+
+                // Snapshot the entries so that the written count always matches the written records
+                List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                output.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> record : snapshot) {
+                    Entry entry = record.getValue();
+                    writeString(output, record.getKey());
+                    output.writeLong(entry.size());
+                    output.writeLong(entry.modified());
+                    writeString(output, entry.fileKey());
+                    output.write(entry.digest());
+                }
+            }
+
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.print("Unable to write hash cache: ");
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Looks the file up in the cache
+     *
+     * @param file       file to look up
+     * @param attributes current attributes of the file
+     * @return cached digest or {@code null} if there is no valid one
+     */
+    public byte[] get(Path file, BasicFileAttributes attributes) {
+        String key = getKey(file);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = loaded.remove(key);
+        }
+        if (entry != null && entry.matches(attributes.size(), getModified(attributes), getFileKey(attributes))) {
+            entries.put(key, entry);
+            hits.increment();
+            return entry.digest();
+        }
+
+        if (entry != null) {
+            invalidated.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores freshly computed digest of the file
+     *
+     * @param file     hashed file
+     * @param before   attributes of the file read before hashing
+     * @param after    attributes of the file read after hashing
+     * @param hashedAt {@link System#currentTimeMillis()} at the moment hashing was started
+     * @param digest   computed digest
+     */
+    public void put(Path file, BasicFileAttributes before, BasicFileAttributes after, long hashedAt, byte[] digest) {
+        String key = getKey(file);
+        long modified = getModified(before);
+        if (before.size() != after.size() || modified != getModified(after)
+                || modified + RACY_WINDOW_NANOS >= TimeUnit.MILLISECONDS.toNanos(hashedAt)) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry(before.size(), modified, getFileKey(before), Arrays.copyOf(digest, digest.length)));
+    }
+
+    public void printStatistics() {
+        System.err.format("Hash cache: %d hits, %d misses (%d invalidated), %d entries of unvisited files dropped%n",
+                hits.sum(), misses.sum(), invalidated.sum(), dropped);
+    }
+
+    private static String getKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static long getModified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String getFileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
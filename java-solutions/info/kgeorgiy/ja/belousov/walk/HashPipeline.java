@@ -0,0 +1,183 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+public class HashPipeline implements ResultSink {
+    private static final int PENDING_PER_THREAD = 64;
+
+    private final AbstractHasher hasher;
+    private final HashCache cache;
+    private final WalkMetrics metrics;
+    private final HashWriter output;
+    private final byte[] emptyDigest;
+    private final int[] columns;
+    private final ExecutorService workers;
+    private final ThreadLocal<AbstractHasher> workerHashers;
+    private final Deque<PendingResult> pending = new ArrayDeque<>();
+    private final int maxPending;
+
+    private record PendingResult(Future<Hashed> hash, String filePath) {
+    }
+
+    /**
+     * @param digest digest of the file or {@code null} if it is not a regular file
+     * @param chunks chunk records of the file or {@code null} if there are none
+     */
+    private record Hashed(byte[] digest, ChunkingContext.PendingRecord chunks) {
+    }
+
+    public HashPipeline(AbstractHasher hasher, HasherFactory factory, int threads, HashCache cache,
+                        WalkMetrics metrics, HashWriter output) {
+        this.hasher = hasher;
+        this.metrics = metrics;
+        this.emptyDigest = new byte[hasher.getDigestSize()];
+        this.columns = hasher.getColumns();
+        this.cache = cache;
+        this.output = output;
+        this.maxPending = threads * PENDING_PER_THREAD;
+
+        if (threads > 1) {
+            workers = Executors.newFixedThreadPool(threads);
+            workerHashers = factory.perThread();
+        } else {
+            workers = null;
+            workerHashers = null;
+        }
+    }
+
+    /**
+     * @return digest of the file or {@code null} if it is not a regular file and must be skipped
+     */
+    private byte[] hashFile(AbstractHasher hasher, Path file) {
+        if (metrics == null) {
+            return hashFileImpl(hasher, file);
+        }
+
+        long start = System.nanoTime();
+        byte[] digest = hashFileImpl(hasher, file);
+        if (digest != null) {
+            metrics.recordFile(System.nanoTime() - start);
+        }
+        return digest;
+    }
+
+    private byte[] hashFileImpl(AbstractHasher hasher, Path file) {
+        try {
+            if (cache == null) {
+                if (!Files.isRegularFile(file)) {
+                    return null;
+                }
+                hasher.setFile(file);
+                return hasher.computeDigest();
+            }
+
+            BasicFileAttributes before;
+            try {
+                before = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Same as Files.isRegularFile: unreadable attributes mean it's not a regular file
+                return null;
+            }
+            if (!before.isRegularFile()) {
+                return null;
+            }
+            byte[] cached = cache.get(file, before);
+            if (cached != null) {
+                return cached;
+            }
+
+            long hashedAt = System.currentTimeMillis();
+            hasher.setFile(file);
+            byte[] digest = hasher.computeDigest();
+            cache.put(file, before, Files.readAttributes(file, BasicFileAttributes.class), hashedAt, digest);
+            return digest;
+        } catch (IOException e) {
+            System.err.print("Error reading from file: ");
+            System.err.println(e.getMessage());
+            if (metrics != null) {
+                metrics.recordError(WalkMetrics.Error.FILE_READ);
+            }
+        }
+        return emptyDigest;
+    }
+
+    @Override
+    public void submit(Path file) throws IOException {
+        if (workers == null) {
+            write(new Hashed(hashFile(hasher, file), hasher.takePendingRecord()), file.toString());
+            return;
+        }
+
+        enqueue(new PendingResult(workers.submit(() -> {
+            AbstractHasher workerHasher = workerHashers.get();
+            return new Hashed(hashFile(workerHasher, file), workerHasher.takePendingRecord());
+        }), file.toString()));
+    }
+
+    @Override
+    public void submitEmpty(String filePath) throws IOException {
+        if (workers == null) {
+            output.write(emptyDigest, columns, filePath);
+            return;
+        }
+
+        enqueue(new PendingResult(CompletableFuture.completedFuture(new Hashed(emptyDigest, null)), filePath));
+    }
+
+    private void enqueue(PendingResult result) throws IOException {
+        pending.add(result);
+        while (pending.size() > maxPending) {
+            flushHead();
+        }
+    }
+
+    private void flushHead() throws IOException {
+        PendingResult head = pending.poll();
+        assert head != null;
+
+        Hashed result = new Hashed(emptyDigest, null);
+        try {
+            result = head.hash().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.print("Interrupted while hashing file: ");
+            System.err.println(head.filePath());
+        } catch (ExecutionException e) {
+            System.err.print("Error hashing file: ");
+            System.err.println(e.getCause().getMessage());
+        }
+        write(result, head.filePath());
+    }
+
+    private void write(Hashed result, String filePath) throws IOException {
+        if (result.digest() != null) {
+            output.write(result.digest(), columns, filePath);
+        }
+        if (result.chunks() != null) {
+            result.chunks().write();
+        }
+    }
+
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            flushHead();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes walk results as {@code <hex digest columns> <path>} lines. Digests are hex-encoded straight into
+ * a reusable byte buffer that is written to the channel in large chunks.
+ */
+public class HashWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] HEX_TABLE = new byte[256 * 2];
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 256; i++) {
+            HEX_TABLE[2 * i] = digits[i >>> 4];
+            HEX_TABLE[2 * i + 1] = digits[i & 0xF];
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private int position;
+
+    public HashWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes a single result line
+     *
+     * @param digest   raw digest
+     * @param columns  sizes of the digest parts printed as separate columns, see {@link AbstractHasher#getColumns()}
+     * @param filePath path of the hashed file
+     */
+    public void write(byte[] digest, int[] columns, String filePath) throws IOException {
+        writeDigest(digest, columns);
+        writePath(filePath);
+        writeLineSeparator();
+    }
+
+    /**
+     * Writes a single result line for a part of a file in {@code <hex digest columns> <offset> <length> <path>} format
+     *
+     * @param digest   raw digest of the part
+     * @param columns  sizes of the digest parts printed as separate columns, see {@link AbstractHasher#getColumns()}
+     * @param offset   offset of the part in the file
+     * @param length   length of the part
+     * @param filePath path of the hashed file
+     */
+    public void write(byte[] digest, int[] columns, long offset, long length, String filePath) throws IOException {
+        writeDigest(digest, columns);
+        writeNumber(offset);
+        writeNumber(length);
+        writePath(filePath);
+        writeLineSeparator();
+    }
+
+    private void writeDigest(byte[] digest, int[] columns) throws IOException {
+        ensureCapacity(digest.length * 2 + columns.length);
+        int offset = 0;
+        for (int column : columns) {
+            if (offset > 0) {
+                buffer[position++] = ' ';
+            }
+            for (int i = offset; i < offset + column; i++) {
+                int index = (digest[i] & 0xFF) << 1;
+                buffer[position++] = HEX_TABLE[index];
+                buffer[position++] = HEX_TABLE[index + 1];
+            }
+            offset += column;
+        }
+        buffer[position++] = ' ';
+    }
+
+    private void writeNumber(long value) throws IOException {
+        // Long.MIN_VALUE is 20 characters long, including the sign
+        ensureCapacity(21);
+        int start = position;
+        long rest = value;
+        do {
+            buffer[position++] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            buffer[position++] = '-';
+        }
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+        buffer[position++] = ' ';
+    }
+
+    public void writeLineSeparator() throws IOException {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, position, LINE_SEPARATOR.length);
+        position += LINE_SEPARATOR.length;
+    }
+
+    private void writePath(String filePath) throws IOException {
+        int length = filePath.length();
+        for (int i = 0; i < length; i++) {
+            char c = filePath.charAt(i);
+            if (c >= 0x80) {
+                writeEncoded(filePath, i);
+                return;
+            }
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    private void writeEncoded(String filePath, int from) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(filePath, from, filePath.length());
+        encoder.reset();
+        CoderResult result;
+        do {
+            wrapped.limit(buffer.length).position(position);
+            result = encoder.encode(chars, wrapped, true);
+            if (!result.isOverflow()) {
+                result = encoder.flush(wrapped);
+            }
+            position = wrapped.position();
+            if (result.isOverflow()) {
+                flushBuffer();
+            }
+        } while (result.isOverflow());
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        if (buffer.length - position < size) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        wrapped.limit(position).position(0);
+        while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+        }
+        position = 0;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
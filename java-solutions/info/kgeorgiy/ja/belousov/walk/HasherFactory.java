@@ -0,0 +1,22 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.security.NoSuchAlgorithmException;
+
+@FunctionalInterface
+public interface HasherFactory {
+    AbstractHasher create() throws NoSuchAlgorithmException;
+
+    /**
+     * Hashers for worker threads. Must only be used once {@link #create()} has already succeeded,
+     * so the algorithm is known to be available.
+     */
+    default ThreadLocal<AbstractHasher> perThread() {
+        return ThreadLocal.withInitial(() -> {
+            try {
+                return create();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
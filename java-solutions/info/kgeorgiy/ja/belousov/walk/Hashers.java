@@ -0,0 +1,61 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Registry of the hashers selectable from the command line
+ */
+public class Hashers {
+    private static final Map<String, HasherFactory> HASHERS = new LinkedHashMap<>();
+
+    static {
+        HASHERS.put("sha256", Sha256Hasher::new);
+        HASHERS.put("sha1", () -> new MessageDigestHasher("SHA-1"));
+        HASHERS.put("sha512", () -> new MessageDigestHasher("SHA-512"));
+        HASHERS.put("md5", () -> new MessageDigestHasher("MD5"));
+        HASHERS.put("crc32", () -> new ChecksumHasher("CRC32", new CRC32()));
+        HASHERS.put("crc32c", () -> new ChecksumHasher("CRC32C", new CRC32C()));
+        HASHERS.put("xxh64", Xxh64Hasher::new);
+    }
+
+    private Hashers() {
+    }
+
+    public static String getNames() {
+        return String.join(", ", HASHERS.keySet());
+    }
+
+    /**
+     * Resolves a comma-separated list of hasher names
+     *
+     * @param names hasher names, e.g. {@code sha256,crc32c}
+     * @return factory of a single hasher or of a {@link CompositeHasher} computing all the requested digests in one pass
+     * @throws IllegalArgumentException if some name is unknown
+     */
+    public static HasherFactory get(String names) {
+        List<HasherFactory> factories = new ArrayList<>();
+        for (String name : names.split(",")) {
+            HasherFactory factory = HASHERS.get(name.trim().toLowerCase());
+            if (factory == null) {
+                throw new IllegalArgumentException("Unknown hash algorithm " + name + ", expected one of: " + getNames());
+            }
+            factories.add(factory);
+        }
+
+        if (factories.size() == 1) {
+            return factories.get(0);
+        }
+        return () -> {
+            List<AbstractHasher> hashers = new ArrayList<>(factories.size());
+            for (HasherFactory factory : factories) {
+                hashers.add(factory.create());
+            }
+            return new CompositeHasher(hashers);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class MessageDigestHasher extends AbstractHasher {
+    final protected MessageDigest hasher;
+
+    public MessageDigestHasher(String algorithm) throws NoSuchAlgorithmException {
+        this.hasher = MessageDigest.getInstance(algorithm);
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        hasher.update(data);
+    }
+
+    @Override
+    protected byte[] digest() {
+        return hasher.digest();
+    }
+
+    @Override
+    protected void reset() {
+        hasher.reset();
+    }
+
+    @Override
+    public String getName() {
+        return hasher.getAlgorithm();
+    }
+
+    @Override
+    protected int getBlockSize() {
+        return 1 << 16;
+    }
+
+    @Override
+    protected int getDigestSize() {
+        return hasher.getDigestLength();
+    }
+}
@@ -0,0 +1,263 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Directory tree walker that lists subdirectories in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Like {@link Files#walk}, the stream starts with the root itself and fails with an {@link IOException}
+ * if the root can't be accessed, and the entries follow in the same depth-first order. Unlike it,
+ * only non-directory entries follow the root, and errors in nested directories are reported to stderr
+ * without aborting the walk.
+ * <p>
+ * Directories are read ahead of the consumer, at most {@link #MAX_PREFETCHED} of them at a time
+ * and at most about {@link #MAX_QUEUED} entries in total. A directory paused at that limit is read
+ * by the consumer itself once it enters it, in batches of {@link #BATCH} entries, so a single huge
+ * directory is never queued whole.
+ */
+public class ParallelTreeWalker implements IOFunction<Path, Stream<Path>>, AutoCloseable {
+    private static final int MAX_PREFETCHED = 1 << 8;
+    private static final int MAX_QUEUED = 1 << 14;
+    private static final int BATCH = 1 << 8;
+
+    private final ForkJoinPool pool;
+
+    public ParallelTreeWalker(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public Stream<Path> apply(Path root) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            return Stream.of(root);
+        }
+
+        // Opened synchronously, so that an inaccessible root is reported by the caller as a whole
+        DirectoryStream<Path> entries = Files.newDirectoryStream(root);
+        Traversal traversal = new Traversal(root, entries);
+        return Stream.concat(Stream.of(root), StreamSupport.stream(traversal, false)).onClose(traversal::cancel);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private record Entry(Path path, Traversal.Listing directory) {
+    }
+
+    private class Traversal extends Spliterators.AbstractSpliterator<Path> {
+        private final Deque<Listing> stack = new ArrayDeque<>();
+        // Listings started but not entered by the consumer yet
+        private final AtomicInteger prefetched = new AtomicInteger();
+        // Entries read ahead by the started listings
+        private final AtomicInteger queued = new AtomicInteger();
+        // Listings with an open directory stream, closed on cancellation
+        private final Set<Listing> open = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        Traversal(Path root, DirectoryStream<Path> entries) {
+            super(Long.MAX_VALUE, Spliterator.NONNULL);
+            Listing listing = new Listing(root, entries);
+            listing.enter();
+            stack.push(listing);
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Listing listing : open) {
+                listing.close();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Path> action) {
+            while (!stack.isEmpty()) {
+                if (cancelled) {
+                    stack.clear();
+                    return false;
+                }
+
+                Entry entry = stack.peek().take();
+                if (entry == null) {
+                    stack.pop();
+                    continue;
+                }
+
+                if (entry.directory() == null) {
+                    action.accept(entry.path());
+                    return true;
+                }
+                entry.directory().enter();
+                stack.push(entry.directory());
+            }
+            return false;
+        }
+
+        private class Listing {
+            private final Path directory;
+            // Guarded by this
+            private DirectoryStream<Path> stream;
+            private Iterator<Path> iterator;
+            private final Deque<Entry> buffer = new ArrayDeque<>();
+            // Leading entries of the buffer, which were read ahead and are counted in queued
+            private int counted;
+            private boolean started;
+            private boolean done;
+            private volatile boolean entered;
+
+            Listing(Path directory, DirectoryStream<Path> opened) {
+                this.directory = directory;
+                if (opened != null) {
+                    stream = opened;
+                    open.add(this);
+                }
+            }
+
+            /**
+             * Starts reading ahead unless too much is waiting for the consumer already
+             */
+            boolean prefetch() {
+                if (cancelled || prefetched.get() >= MAX_PREFETCHED || queued.get() >= MAX_QUEUED) {
+                    return false;
+                }
+                synchronized (this) {
+                    if (started || entered) {
+                        return true;
+                    }
+                    started = true;
+                }
+                prefetched.incrementAndGet();
+                pool.execute(this::readAhead);
+                return true;
+            }
+
+            void enter() {
+                entered = true;
+                synchronized (this) {
+                    if (started) {
+                        prefetched.decrementAndGet();
+                    }
+                }
+            }
+
+            /**
+             * @return next entry for the consumer, or {@code null} if there are none
+             */
+            Entry take() {
+                List<Listing> subdirectories = new ArrayList<>();
+                Entry entry;
+                synchronized (this) {
+                    if (buffer.isEmpty()) {
+                        Entry next;
+                        while (buffer.size() < BATCH && (next = read()) != null) {
+                            buffer.add(next);
+                            if (next.directory() != null) {
+                                subdirectories.add(next.directory());
+                            }
+                        }
+                    }
+
+                    entry = buffer.poll();
+                    if (entry != null && counted > 0) {
+                        counted--;
+                        queued.decrementAndGet();
+                    }
+                }
+
+                if (entry != null) {
+                    subdirectories.remove(entry.directory());
+                }
+                prefetch(subdirectories);
+                return entry;
+            }
+
+            synchronized void close() {
+                finish();
+            }
+
+            private void readAhead() {
+                List<Listing> subdirectories = new ArrayList<>();
+                synchronized (this) {
+                    Entry next;
+                    while (!entered && queued.get() < MAX_QUEUED && (next = read()) != null) {
+                        queued.incrementAndGet();
+                        counted++;
+                        buffer.add(next);
+                        if (next.directory() != null) {
+                            subdirectories.add(next.directory());
+                        }
+                    }
+                }
+                prefetch(subdirectories);
+            }
+
+            // Subdirectories in the order the consumer enters them, the rest are started on demand
+            private static void prefetch(List<Listing> subdirectories) {
+                for (Listing subdirectory : subdirectories) {
+                    if (!subdirectory.prefetch()) {
+                        break;
+                    }
+                }
+            }
+
+            /**
+             * Reads the next entry of the directory, must be called under the lock
+             */
+            private Entry read() {
+                if (done) {
+                    return null;
+                }
+                try {
+                    if (stream == null) {
+                        if (cancelled) {
+                            finish();
+                            return null;
+                        }
+                        stream = Files.newDirectoryStream(directory);
+                        open.add(this);
+                    }
+                    if (iterator == null) {
+                        iterator = stream.iterator();
+                    }
+
+                    if (!cancelled && iterator.hasNext()) {
+                        Path entry = iterator.next();
+                        return Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)
+                                ? new Entry(entry, new Listing(entry, null))
+                                : new Entry(entry, null);
+                    }
+                } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                    System.err.print("Could not access the requested directory: ");
+                    System.err.println(e.getMessage());
+                }
+                finish();
+                return null;
+            }
+
+            private void finish() {
+                done = true;
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        System.err.print("Could not access the requested directory: ");
+                        System.err.println(e.getMessage());
+                    }
+                    stream = null;
+                    open.remove(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Consumer of the files found by the walk
+ */
+public interface ResultSink extends AutoCloseable {
+    /**
+     * Accepts a file found by the walker. Non-regular files are accepted too and are to be skipped by the sink.
+     */
+    void submit(Path file) throws IOException;
+
+    /**
+     * Accepts a requested path that could not be walked
+     */
+    void submitEmpty(String filePath) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
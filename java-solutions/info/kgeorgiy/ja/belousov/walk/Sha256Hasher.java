@@ -1,15 +1,9 @@
 package info.kgeorgiy.ja.belousov.walk;
 
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-public class Sha256Hasher extends AbstractHasher {
+public class Sha256Hasher extends MessageDigestHasher {
     public Sha256Hasher() throws NoSuchAlgorithmException {
-        super(MessageDigest.getInstance("SHA-256"));
-    }
-
-    @Override
-    protected int getBlockSize() {
-        return 512;
+        super("SHA-256");
     }
 }
@@ -0,0 +1,207 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import info.kgeorgiy.ja.belousov.benchmark.ThroughputReport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Throughput benchmark of the walk hashing hot path.
+ * <p>
+ * Generates synthetic trees in a temporary directory (many tiny files, few huge files, deep nesting) and measures
+ * {@link AbstractHasher#computeDigest()} across algorithms, block sizes and read strategies, and
+ * {@link AbstractWalk#solve} across thread counts. Results are written by {@link ThroughputReport}.
+ * <p>
+ * Files are read several times, so the numbers are for the hot page cache.
+ */
+public class WalkBenchmark {
+    private static final List<String> ALGORITHMS = List.of("sha256", "xxh64", "crc32c");
+    private static final List<Integer> BLOCK_SIZES = List.of(512, 8 << 10, 64 << 10, 1 << 20);
+
+    private final ThroughputReport report = new ThroughputReport();
+
+    private record Dataset(String name, Path root, List<Path> files, long bytes) {
+    }
+
+    /**
+     * Main function used as entrypoint when launched as a standalone application
+     *
+     * @param args Optional:
+     *             - path of the JSON result file, results are printed to stdout otherwise
+     *             - scale (int) - multiplier of the generated trees size, 1 by default
+     */
+    public static void main(String[] args) {
+        if (args != null && args.length > 2) {
+            System.err.println("Usage: java WalkBenchmark [result file [scale]]");
+            return;
+        }
+
+        try {
+            int scale = args != null && args.length == 2 ? Integer.parseInt(args[1]) : 1;
+            WalkBenchmark benchmark = new WalkBenchmark();
+            Path workDir = Files.createTempDirectory("walk-benchmark");
+            try {
+                benchmark.runAll(workDir, scale);
+            } finally {
+                deleteRecursively(workDir);
+            }
+
+            benchmark.report.write(args != null && args.length >= 1 ? args[0] : null);
+        } catch (NumberFormatException e) {
+            System.err.println("Incorrect scale format!");
+        } catch (Exception e) {
+            System.err.format("Benchmark failed: %s%n", e);
+        }
+    }
+
+    private void runAll(Path workDir, int scale) throws Exception {
+        List<Dataset> datasets = List.of(
+                generate(workDir.resolve("tiny"), "tiny", 100, 1, 100 * scale, 4 << 10),
+                generate(workDir.resolve("huge"), "huge", 1, 1, 2 * scale, 64 << 20),
+                generate(workDir.resolve("deep"), "deep", 1, 32, 10 * scale, 64 << 10)
+        );
+
+        for (Dataset dataset : datasets) {
+            for (String algorithm : ALGORITHMS) {
+                for (int blockSize : BLOCK_SIZES) {
+                    benchmarkHasher(dataset, algorithm, blockSize, "buffered", Long.MAX_VALUE);
+                }
+                benchmarkHasher(dataset, algorithm, 64 << 10, "mapped", 0);
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (Dataset dataset : datasets) {
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                benchmarkWalk(workDir, dataset, threads);
+            }
+        }
+    }
+
+    private void benchmarkHasher(Dataset dataset, String algorithm, int blockSize, String strategy,
+                                 long mappingThreshold) throws Exception {
+        HasherFactory base = Hashers.get(algorithm);
+        AbstractHasher inner = base.create();
+        AbstractHasher hasher = new AbstractHasher() {
+            @Override
+            protected void update(ByteBuffer data) {
+                inner.update(data);
+            }
+
+            @Override
+            protected byte[] digest() throws IOException {
+                return inner.digest();
+            }
+
+            @Override
+            protected void reset() {
+                inner.reset();
+            }
+
+            @Override
+            public String getName() {
+                return inner.getName();
+            }
+
+            @Override
+            protected int getBlockSize() {
+                return blockSize;
+            }
+
+            @Override
+            protected long getMappingThreshold() {
+                return mappingThreshold;
+            }
+
+            @Override
+            protected int getDigestSize() {
+                return inner.getDigestSize();
+            }
+        };
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("dataset", dataset.name());
+        params.put("algorithm", algorithm);
+        params.put("blockSize", strategy.equals("mapped") ? "n/a" : Integer.toString(blockSize));
+        params.put("strategy", strategy);
+        report.measure("computeDigest", params, "MiB", () -> {
+            for (Path file : dataset.files()) {
+                hasher.setFile(file);
+                hasher.computeDigest();
+            }
+            return dataset.bytes() / (double) (1 << 20);
+        });
+    }
+
+    private void benchmarkWalk(Path workDir, Dataset dataset, int threads) throws Exception {
+        Path input = workDir.resolve("input.txt");
+        Files.writeString(input, dataset.root().toString() + System.lineSeparator(), StandardCharsets.UTF_8);
+        WalkOptions options = new WalkOptions(input.toString(), workDir.resolve("output.txt").toString());
+        options.setThreads(threads);
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("dataset", dataset.name());
+        params.put("algorithm", "sha256");
+        params.put("threads", Integer.toString(threads));
+        report.measure("solve", params, "files", () -> {
+            AbstractWalk.solve(options, Sha256Hasher::new, Files::walk);
+            return dataset.files().size();
+        });
+    }
+
+    /**
+     * Generates {@code width} directories, each being a chain of {@code depth} nested directories
+     * with {@code filesPerDirectory} files of {@code fileSize} random bytes at every level
+     */
+    private static Dataset generate(Path root, String name, int width, int depth, int filesPerDirectory,
+                                    int fileSize) throws IOException {
+        SplittableRandom random = new SplittableRandom(name.hashCode());
+        ByteBuffer content = ByteBuffer.allocate(Math.min(fileSize, 1 << 20));
+        List<Path> files = new ArrayList<>();
+        long bytes = 0;
+        for (int i = 0; i < width; i++) {
+            Path directory = root.resolve("w" + i);
+            for (int level = 0; level < depth; level++) {
+                directory = directory.resolve("d" + level);
+                Files.createDirectories(directory);
+                for (int j = 0; j < filesPerDirectory; j++) {
+                    Path file = directory.resolve("f" + j);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        for (long written = 0; written < fileSize; ) {
+                            content.clear().limit((int) Math.min(content.capacity(), fileSize - written));
+                            while (content.hasRemaining()) {
+                                content.put((byte) random.nextInt());
+                            }
+                            written += channel.write(content.flip());
+                        }
+                    }
+                    files.add(file);
+                    bytes += fileSize;
+                }
+            }
+        }
+        return new Dataset(name, root, files, bytes);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
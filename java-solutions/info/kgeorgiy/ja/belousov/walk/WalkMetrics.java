@@ -0,0 +1,221 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import info.kgeorgiy.ja.belousov.concurrent.LatencyHistogram;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Counters of a single walk. All of them are striped, so they can be updated by any number of hashing threads.
+ * <p>
+ * Time of reading memory-mapped files is accounted as digest time, since pages are only read while being hashed.
+ */
+public class WalkMetrics implements WalkMetricsMXBean, AutoCloseable {
+    private static final String OBJECT_NAME = "info.kgeorgiy.ja.belousov.walk:type=WalkMetrics";
+
+    public enum Error {
+        ROOT_ACCESS, FILE_READ, OUTPUT
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder traversalNanos = new LongAdder();
+    private final LongAdder openNanos = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder digestNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Error, LongAdder> errors = new EnumMap<>(Error.class);
+
+    private ObjectName registeredName;
+    private ScheduledExecutorService reporter;
+
+    public WalkMetrics() {
+        for (Error error : Error.values()) {
+            errors.put(error, new LongAdder());
+        }
+    }
+
+    /**
+     * Registers this instance in the platform MBean server. Failures are reported and otherwise ignored.
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.format("Unable to register walk metrics MBean: %s%n", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts printing a status line to stderr every {@code periodSeconds}
+     */
+    public void startReporting(int periodSeconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::printStatus, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Wraps the walker, so that the time spent waiting for the next file is accounted as traversal time
+     */
+    public IOFunction<Path, Stream<Path>> timed(IOFunction<Path, Stream<Path>> walker) {
+        return root -> {
+            long start = System.nanoTime();
+            Stream<Path> stream = walker.apply(root);
+            traversalNanos.add(System.nanoTime() - start);
+
+            Spliterator<Path> files = stream.spliterator();
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<Path>(Long.MAX_VALUE, 0) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Path> action) {
+                    long start = System.nanoTime();
+                    boolean advanced = files.tryAdvance(action);
+                    traversalNanos.add(System.nanoTime() - start);
+                    return advanced;
+                }
+            }, false).onClose(stream::close);
+        };
+    }
+
+    /**
+     * Makes hashers of the factory report open, read and digest times here
+     */
+    public HasherFactory timed(HasherFactory factory) {
+        return () -> {
+            AbstractHasher hasher = factory.create();
+            hasher.setMetrics(this);
+            return hasher;
+        };
+    }
+
+    public void recordFile(long nanos) {
+        files.increment();
+        latency.record(nanos);
+    }
+
+    public void recordError(Error error) {
+        errors.get(error).increment();
+    }
+
+    void recordOpen(long nanos) {
+        openNanos.add(nanos);
+    }
+
+    void recordRead(long bytes, long nanos) {
+        this.bytes.add(bytes);
+        readNanos.add(nanos);
+    }
+
+    void recordDigest(long nanos) {
+        digestNanos.add(nanos);
+    }
+
+    private double getElapsedSeconds() {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private long getErrorsTotal() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private void printStatus() {
+        System.err.format("Walk: %d files (%.1f files/s), %d MiB (%.1f MiB/s), %d errors%n",
+                getFiles(), getFilesPerSecond(), getBytes() >> 20, getBytesPerSecond() / (1 << 20), getErrorsTotal());
+    }
+
+    /**
+     * Prints the final summary to stderr
+     */
+    public void printStatistics() {
+        printStatus();
+        System.err.format("Walk time: traversal %d ms, open %d ms, read %d ms, digest %d ms%n",
+                getTraversalMillis(), getOpenMillis(), getReadMillis(), getDigestMillis());
+        System.err.format("Walk errors: %s%n", getErrors());
+        System.err.format("Walk latency: p50 %s, p99 %s, max %s%n",
+                latency.getPercentile(0.5), latency.getPercentile(0.99), latency.getPercentile(1));
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / getElapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / getElapsedSeconds();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        errors.forEach((error, count) -> result.put(error.name(), count.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyHistogram() {
+        return latency.toMap();
+    }
+
+    @Override
+    public long getTraversalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(traversalNanos.sum());
+    }
+
+    @Override
+    public long getOpenMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(openNanos.sum());
+    }
+
+    @Override
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.sum());
+    }
+
+    @Override
+    public long getDigestMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(digestNanos.sum());
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException ignored) {
+            }
+        }
+    }
+}
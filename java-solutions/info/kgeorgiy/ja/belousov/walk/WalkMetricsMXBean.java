@@ -0,0 +1,34 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link WalkMetrics}
+ */
+public interface WalkMetricsMXBean {
+    long getFiles();
+
+    long getBytes();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * @return number of errors by category
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * @return number of files by the upper bound of their hashing latency
+     */
+    Map<String, Long> getLatencyHistogram();
+
+    long getTraversalMillis();
+
+    long getOpenMillis();
+
+    long getReadMillis();
+
+    long getDigestMillis();
+}
@@ -0,0 +1,222 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WalkOptions {
+    public static final String USAGE = "<input file path> <output file path> [threads] [--cache <cache file path>] "
+            + "[--hash <algorithm>[,<algorithm>...]] "
+            + "[--chunks <chunk manifest file path>] [--duplicates] [--metrics] [--progress <seconds>]";
+    public static final String RECURSIVE_USAGE = USAGE + " [--walkers <directory listing threads>]";
+
+    private final String input;
+    private final String output;
+    private int threads = 1;
+    private Path cacheFile;
+    private String hashes = "sha256";
+    private int walkers = 1;
+    private Path chunkManifest;
+    private boolean duplicates;
+    private boolean metrics;
+    private int progressPeriod;
+
+    public WalkOptions(String input, String output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Parses command line arguments in the {@link #USAGE} or {@link #RECURSIVE_USAGE} format
+     *
+     * @param args      command line arguments
+     * @param recursive whether directories are walked, so that {@code --walkers} is accepted
+     * @return parsed options
+     * @throws IllegalArgumentException if arguments are malformed
+     */
+    public static WalkOptions parse(String[] args, boolean recursive) {
+        if (args == null) {
+            throw new IllegalArgumentException("No arguments");
+        }
+
+        List<String> positional = new ArrayList<>();
+        Path cacheFile = null;
+        String hashes = null;
+        String walkers = null;
+        Path chunkManifest = null;
+        boolean duplicates = false;
+        boolean metrics = false;
+        String progressPeriod = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+                throw new IllegalArgumentException("Null argument");
+            }
+            if (args[i].equals("--cache")) {
+                cacheFile = Path.of(requireValue(args, ++i));
+            } else if (args[i].equals("--hash")) {
+                hashes = requireValue(args, ++i);
+            } else if (args[i].equals("--walkers")) {
+                if (!recursive) {
+                    throw new IllegalArgumentException("--walkers is only supported by the recursive walk");
+                }
+                walkers = requireValue(args, ++i);
+            } else if (args[i].equals("--chunks")) {
+                chunkManifest = Path.of(requireValue(args, ++i));
+            } else if (args[i].equals("--duplicates")) {
+                duplicates = true;
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else if (args[i].equals("--progress")) {
+                progressPeriod = requireValue(args, ++i);
+            } else if (args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+
+        if (positional.size() < 2 || positional.size() > 3) {
+            throw new IllegalArgumentException("Expected input and output file paths");
+        }
+
+        if (cacheFile != null && chunkManifest != null) {
+            // Cached entries keep only the Merkle root, so the manifest would miss their chunks
+            throw new IllegalArgumentException("--cache can't be combined with --chunks");
+        }
+        if (duplicates && (cacheFile != null || chunkManifest != null)) {
+            throw new IllegalArgumentException("--duplicates can't be combined with --cache or --chunks");
+        }
+
+        WalkOptions options = new WalkOptions(positional.get(0), positional.get(1));
+        options.cacheFile = cacheFile;
+        options.chunkManifest = chunkManifest;
+        options.duplicates = duplicates;
+        options.metrics = metrics;
+        if (progressPeriod != null) {
+            options.setProgressPeriod(Integer.parseInt(progressPeriod));
+        }
+        if (hashes != null) {
+            options.setHashes(hashes);
+        }
+        if (walkers != null) {
+            options.setWalkers(Integer.parseInt(walkers));
+        }
+        if (positional.size() == 3) {
+            options.setThreads(Integer.parseInt(positional.get(2)));
+        }
+        return options;
+    }
+
+    private static String requireValue(String[] args, int i) {
+        if (i >= args.length || args[i] == null) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads number must be positive");
+        }
+        this.threads = threads;
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    public void setCacheFile(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @return comma-separated hash algorithm names, see {@link Hashers}
+     */
+    public String getHashes() {
+        return hashes;
+    }
+
+    public void setHashes(String hashes) {
+        Hashers.get(hashes);
+        this.hashes = hashes;
+    }
+
+    /**
+     * @return number of threads listing directories in parallel, {@code 1} for the sequential {@link Files#walk}
+     */
+    public int getWalkers() {
+        return walkers;
+    }
+
+    public void setWalkers(int walkers) {
+        if (walkers < 1) {
+            throw new IllegalArgumentException("Walkers number must be positive");
+        }
+        this.walkers = walkers;
+    }
+
+    /**
+     * @return file to list chunk digests to or {@code null} unless content-defined chunking is requested,
+     * see {@link ChunkingHasher}
+     */
+    public Path getChunkManifest() {
+        return chunkManifest;
+    }
+
+    public void setChunkManifest(Path chunkManifest) {
+        this.chunkManifest = chunkManifest;
+    }
+
+    /**
+     * @return whether groups of duplicate files are to be written instead of the digests, see {@link DuplicateFinder}
+     */
+    public boolean isDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(boolean duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * @return whether {@link WalkMetrics} are collected, exposed via JMX and summarized at the end of the walk
+     */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return period of the status line in seconds, {@code 0} if disabled
+     */
+    public int getProgressPeriod() {
+        return progressPeriod;
+    }
+
+    /**
+     * Enables periodic status line, which implies {@link #setMetrics(boolean) metrics}
+     */
+    public void setProgressPeriod(int progressPeriod) {
+        if (progressPeriod < 1) {
+            throw new IllegalArgumentException("Progress period must be positive");
+        }
+        this.progressPeriod = progressPeriod;
+        this.metrics = true;
+    }
+}
@@ -0,0 +1,133 @@
+package info.kgeorgiy.ja.belousov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64 with zero seed. Digest is the hash value in big-endian byte order (as printed by xxhsum).
+ */
+public class Xxh64Hasher extends AbstractHasher {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    public Xxh64Hasher() {
+        init();
+    }
+
+    private void init() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        total = 0;
+        pending.clear();
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+
+    private void consumeStripe(ByteBuffer data) {
+        v1 = round(v1, data.getLong());
+        v2 = round(v2, data.getLong());
+        v3 = round(v3, data.getLong());
+        v4 = round(v4, data.getLong());
+    }
+
+    @Override
+    protected void update(ByteBuffer data) {
+        total += data.remaining();
+
+        ByteOrder order = data.order();
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && data.hasRemaining()) {
+                    pending.put(data.get());
+                }
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                consumeStripe(pending.flip());
+                pending.clear();
+            }
+
+            while (data.remaining() >= STRIPE) {
+                consumeStripe(data);
+            }
+            pending.put(data);
+        } finally {
+            data.order(order);
+        }
+    }
+
+    @Override
+    protected byte[] digest() {
+        long hash;
+        if (total >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += total;
+
+        pending.flip();
+        while (pending.remaining() >= Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ round(0, pending.getLong()), 27) * PRIME1 + PRIME4;
+        }
+        if (pending.remaining() >= Integer.BYTES) {
+            hash = Long.rotateLeft(hash ^ (pending.getInt() & 0xFFFFFFFFL) * PRIME1, 23) * PRIME2 + PRIME3;
+        }
+        while (pending.hasRemaining()) {
+            hash = Long.rotateLeft(hash ^ (pending.get() & 0xFFL) * PRIME5, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+
+        init();
+        return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+    }
+
+    @Override
+    protected void reset() {
+        init();
+    }
+
+    @Override
+    public String getName() {
+        return "XXH64";
+    }
+
+    @Override
+    protected int getBlockSize() {
+        return 1 << 16;
+    }
+
+    @Override
+    protected int getDigestSize() {
+        return Long.BYTES;
+    }
+}